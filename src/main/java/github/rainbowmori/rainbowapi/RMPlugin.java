@@ -1,10 +1,17 @@
 package github.rainbowmori.rainbowapi;
 
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapterFactory;
 import dev.jorel.commandapi.CommandAPICommand;
 import dev.jorel.commandapi.CommandTree;
 import github.rainbowmori.rainbowapi.util.PrefixUtil;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 import org.bukkit.event.Listener;
 import org.bukkit.plugin.java.JavaPlugin;
 
@@ -16,6 +23,11 @@ public abstract class RMPlugin extends JavaPlugin {
   // プラグイン独自の PrefixUtil
   protected final PrefixUtil prefixUtil;
 
+  // registerTypeAdapter などで登録されたアダプター
+  private final List<Consumer<GsonBuilder>> typeAdapters = new ArrayList<>();
+  // typeAdapters から作成した Gson (登録されるたびに作り直す)
+  private volatile Gson gson;
+
   /**
    * 初期化
    */
@@ -69,4 +81,75 @@ public abstract class RMPlugin extends JavaPlugin {
   public PrefixUtil getPrefixUtil() {
     return prefixUtil;
   }
+
+  /**
+   * このプラグインの {@link #getGson()} に {@link com.google.gson.TypeAdapter} などを登録します
+   * <p>
+   * {@link com.google.gson.JsonElement} を経由しない {@link com.google.gson.TypeAdapter} の使用をおすすめします
+   *
+   * @param type        対象の型
+   * @param typeAdapter {@link GsonBuilder#registerTypeAdapter(Type, Object)} に渡せるもの
+   */
+  public void registerTypeAdapter(Type type, Object typeAdapter) {
+    addTypeAdapter(builder -> builder.registerTypeAdapter(type, typeAdapter));
+  }
+
+  /**
+   * このプラグインの {@link #getGson()} に type とそのサブクラスのアダプターを登録します
+   *
+   * @param type        対象の型
+   * @param typeAdapter {@link GsonBuilder#registerTypeHierarchyAdapter(Class, Object)} に渡せるもの
+   */
+  public void registerTypeHierarchyAdapter(Class<?> type, Object typeAdapter) {
+    addTypeAdapter(builder -> builder.registerTypeHierarchyAdapter(type, typeAdapter));
+  }
+
+  /**
+   * このプラグインの {@link #getGson()} に {@link TypeAdapterFactory} を登録します
+   *
+   * @param factory instance
+   */
+  public void registerTypeAdapterFactory(TypeAdapterFactory factory) {
+    addTypeAdapter(builder -> builder.registerTypeAdapterFactory(factory));
+  }
+
+  private void addTypeAdapter(Consumer<GsonBuilder> typeAdapter) {
+    synchronized (typeAdapters) {
+      typeAdapters.add(typeAdapter);
+      gson = null;
+    }
+  }
+
+  /**
+   * {@link #getGson()} のもとになる {@link GsonBuilder}
+   * <p>
+   * prettyPrinting などを変更したい場合はオーバーライドしてください
+   *
+   * @return {@link RainbowAPI#gson} の設定を引き継いだ {@link GsonBuilder}
+   */
+  protected GsonBuilder createGsonBuilder() {
+    return RainbowAPI.gson.newBuilder();
+  }
+
+  /**
+   * {@link RainbowAPI#gson} にこのプラグインで登録したアダプターを追加した {@link Gson}
+   * <p>
+   * {@link github.rainbowmori.rainbowapi.api.JsonAPI} の読み書きにも使用されます
+   *
+   * @return このプラグインの {@link Gson}
+   */
+  public Gson getGson() {
+    Gson result = gson;
+    if (result == null) {
+      synchronized (typeAdapters) {
+        result = gson;
+        if (result == null) {
+          GsonBuilder builder = createGsonBuilder();
+          typeAdapters.forEach(typeAdapter -> typeAdapter.accept(builder));
+          gson = result = builder.create();
+        }
+      }
+    }
+    return result;
+  }
 }
@@ -5,10 +5,15 @@ import com.google.gson.GsonBuilder;
 import de.tr7zw.changeme.nbtapi.NBTContainer;
 import dev.jorel.commandapi.CommandAPI;
 import dev.jorel.commandapi.CommandAPIBukkitConfig;
+import github.rainbowmori.rainbowapi.api.FileAPI;
+import github.rainbowmori.rainbowapi.api.FileFlusher;
+import github.rainbowmori.rainbowapi.api.FileWatcher;
 import github.rainbowmori.rainbowapi.api.serializer.ItemStackSerializer;
 import github.rainbowmori.rainbowapi.api.serializer.LocationSerializer;
 import github.rainbowmori.rainbowapi.dependencies.ui.GuiListener;
 import github.rainbowmori.rainbowapi.listener.BlockBreak;
+import github.rainbowmori.rainbowapi.listener.WorldCache;
+import github.rainbowmori.rainbowapi.util.BroadcastDispatcher;
 import org.bukkit.Location;
 import org.bukkit.inventory.ItemStack;
 
@@ -17,11 +22,15 @@ import org.bukkit.inventory.ItemStack;
  */
 public final class RainbowAPI extends RMPlugin {
 
+  private static final ItemStackSerializer itemStackSerializer = new ItemStackSerializer();
+
   /**
    * {@link Location} and {@link ItemStack} を Serializer and Deserializer できる {@link Gson}
+   * <p>
+   * 各プラグインの {@link RMPlugin#getGson()} のもとになります
    */
   public static final Gson gson = new GsonBuilder()
-      .registerTypeAdapter(ItemStack.class, new ItemStackSerializer())
+      .registerTypeAdapter(ItemStack.class, itemStackSerializer)
       .registerTypeAdapter(Location.class, new LocationSerializer())
       .create();
 
@@ -31,6 +40,13 @@ public final class RainbowAPI extends RMPlugin {
     return guiListener;
   }
 
+  /**
+   * @return {@link #gson} が使う {@link ItemStackSerializer} (キャッシュの統計を取得できます)
+   */
+  public static ItemStackSerializer getItemStackSerializer() {
+    return itemStackSerializer;
+  }
+
   public static RainbowAPI getPlugin() {
     return getPlugin(RainbowAPI.class);
   }
@@ -38,9 +54,12 @@ public final class RainbowAPI extends RMPlugin {
   @Override
   public void onEnable() {
     registerEvent(BlockBreak.getInstance());
+    registerEvent(WorldCache.getInstance());
     registerEvent(guiListener = GuiListener.getInstance());
 
     CommandAPI.onEnable();
+    FileFlusher.start(this);
+    BroadcastDispatcher.start(this);
 
   }
 
@@ -48,6 +67,10 @@ public final class RainbowAPI extends RMPlugin {
   public void onDisable() {
     registeredCommands.forEach(CommandAPI::unregister);
     CommandAPI.onDisable();
+    BroadcastDispatcher.stop();
+    FileWatcher.stop();
+    FileFlusher.stop();
+    FileAPI.shutdownExecutor();
   }
 
   @Override
@@ -0,0 +1,897 @@
+package github.rainbowmori.rainbowapi.api;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * メモリマップしたバイナリファイルに文字列のキーとバイト列の値を保存する {@link FileAPI}
+ * <p>
+ * ファイルはヘッダー、ハッシュ索引、追記専用のログで構成され、キーの取得と更新はファイル全体を読み込まずに O(1) で行えます
+ * <pre>
+ * [ヘッダー 64byte][スロット (hash:int, offset:long) * slotCount][レコード ...]
+ * レコード = [crc:int][keyLength:int][valueLength:int][key][value] (valueLength が -1 の場合は削除)
+ * </pre>
+ * 更新は常にログの末尾に追記され、正常に {@link #close()} されなかった場合は読み込み時に CRC が一致するレコードから索引を再構築します
+ * 不要になったレコードは {@link #compact()} または保存時の自動コンパクションで取り除かれます
+ * コンパクションはメモリマップしたファイルを置き換えずにその場で書き直すため、ファイルは小さくなりません
+ * (値は {@link #get(String)} でもコピーして返すため、書き直されても取得した値は変わりません)
+ * <p>
+ * メモリマップの制限により、ファイルの大きさは2GBまでです
+ */
+public class BinaryAPI extends FileAPI<MappedByteBuffer> {
+
+  private static final int MAGIC = 0x524D4B56;
+  private static final int VERSION = 1;
+
+  private static final int HEADER_SIZE = 64;
+  private static final int MAGIC_OFFSET = 0;
+  private static final int VERSION_OFFSET = 4;
+  private static final int SLOTS_OFFSET = 8;
+  private static final int CLEAN_OFFSET = 12;
+  private static final int LOG_END_OFFSET = 16;
+  private static final int LIVE_OFFSET = 24;
+  private static final int USED_OFFSET = 28;
+  private static final int DEAD_OFFSET = 32;
+  // コンパクションの書き直し中は1 (途中で停止した場合に .compact から書き直すかの判断に使う)
+  private static final int COMPACTING_OFFSET = 40;
+
+  private static final int SLOT_SIZE = 12;
+  private static final int RECORD_HEADER_SIZE = 12;
+  private static final int TOMBSTONE = -1;
+  private static final int MIN_SLOTS = 64;
+  private static final int INITIAL_LOG_SIZE = 64 * 1024;
+  // コンパクション中の追記が多く索引に入りきらない場合に、やり直す回数 (超えたらロックしたまま行う)
+  private static final int COMPACT_ATTEMPTS = 3;
+  // 不要なレコードがこれより大きく、ログの半分を超えたら保存時にコンパクションする
+  private static final long COMPACT_MIN_DEAD = 1024 * 1024;
+  // コンパクションの内容を書き出すファイルの拡張子
+  private static final String COMPACT_EXTENSION = ".compact";
+
+  // 保存時はデータがすでにファイルにあるため、マップを fsync するだけ
+  private static final DataWriter FORCE = output -> {
+  };
+
+  // loadData はスーパークラスのコンストラクタから呼ばれるため、フィールドに初期値を書かないでください
+  // コンパクション、読み込み、close を1つずつ行うためのロック (このオブジェクトのロックより先に取る)
+  private volatile Object compactLock;
+  private FileChannel channel;
+  private int slotCount;
+  private long logEnd;
+  private int liveCount;
+  private int usedSlots;
+  private long deadBytes;
+  // 索引が埋まってきたため、I/Oスレッドでのコンパクションを要求したか
+  private boolean compactRequested;
+
+  /**
+   * 引数のプラグインのフォルダーの第一階層からnameのファイルを読み込みます
+   *
+   * @param plugin 読み込みたいフォルダーのプラグイン
+   * @param name   読み込むファイルの名前
+   */
+  public BinaryAPI(Plugin plugin, String name) {
+    super(plugin, name);
+  }
+
+  /**
+   * 引数のプラグインのフォルダーの {@link #path} {@link #name} のファイルを読み込みます 例 [plugin=TEST] [path=first/second]
+   * [path=fileName] -> TEST/first/second/fileName.dat のファイルを読み込みます
+   *
+   * @param plugin 読み込みたいフォルダーのプラグイン
+   * @param name   読み込むファイルの名前
+   * @param path   ファイル階層
+   */
+  public BinaryAPI(Plugin plugin, String name, String path) {
+    super(plugin, name, path);
+  }
+
+  /**
+   * @return ファイルの拡張子
+   */
+  @Override
+  protected String getExtension() {
+    return ".dat";
+  }
+
+  /**
+   * ファイルをメモリマップし、索引を読み込みます
+   * <p>
+   * 読み込めなかった場合は壊れたファイルを .broken として残し、{@link #backupFile} か空のファイルから読み込みます
+   */
+  @Override
+  public void loadData() {
+    if (compactLock == null) {
+      // スーパークラスのコンストラクタから呼ばれた場合
+      compactLock = new Object();
+    }
+    synchronized (compactLock) {
+      synchronized (this) {
+        load();
+      }
+    }
+  }
+
+  private void load() {
+    closeChannel();
+    setLoadError(null);
+    try {
+      recoverCompaction();
+      open();
+    } catch (IOException | RuntimeException e) {
+      message.logError("Failed to load file: " + paths + " (" + e.getMessage() + ")");
+      setLoadError(e);
+      try {
+        Files.move(file.toPath(), new File(file.getPath() + ".broken").toPath(),
+            StandardCopyOption.REPLACE_EXISTING);
+        if (backupFile.exists()) {
+          message.logWarn(paths + " の読み込みに失敗したため " + backupFile.getName() + " から読み込みます");
+          Files.copy(backupFile.toPath(), file.toPath());
+          try {
+            open();
+            setLoadError(null);
+            return;
+          } catch (IOException | RuntimeException backupException) {
+            message.logError("Failed to load file: " + backupFile.getName() + " ("
+                + backupException.getMessage() + ")");
+            e.addSuppressed(backupException);
+            Files.deleteIfExists(file.toPath());
+          }
+        }
+        open();
+      } catch (IOException ex) {
+        throw new RuntimeException(ex);
+      }
+    }
+  }
+
+  private void open() throws IOException {
+    FileChannel opened = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      long size = opened.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("ファイルが大きすぎます (" + size + " byte)");
+      }
+      if (size == 0) {
+        channel = opened;
+        initialize(MIN_SLOTS);
+        return;
+      }
+      if (size < HEADER_SIZE) {
+        throw new IOException("ヘッダーが壊れています");
+      }
+      MappedByteBuffer buffer = opened.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      if (buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+        throw new IOException("バイナリファイルではありません");
+      }
+      if (buffer.getInt(VERSION_OFFSET) != VERSION) {
+        throw new IOException("対応していないバージョンです (" + buffer.getInt(VERSION_OFFSET) + ")");
+      }
+      int slots = buffer.getInt(SLOTS_OFFSET);
+      if (slots < MIN_SLOTS || Integer.bitCount(slots) != 1
+          || HEADER_SIZE + (long) slots * SLOT_SIZE > size) {
+        throw new IOException("索引の大きさが不正です (" + slots + ")");
+      }
+      channel = opened;
+      data = buffer;
+      slotCount = slots;
+      long end = buffer.getLong(LOG_END_OFFSET);
+      if (buffer.getInt(CLEAN_OFFSET) == 1 && end >= logStart() && end <= size) {
+        logEnd = end;
+        liveCount = buffer.getInt(LIVE_OFFSET);
+        usedSlots = buffer.getInt(USED_OFFSET);
+        deadBytes = buffer.getLong(DEAD_OFFSET);
+      } else {
+        message.logWarn(paths + " は正常に閉じられなかったため、ログから索引を再構築します");
+        rebuild();
+      }
+      buffer.putInt(CLEAN_OFFSET, 0);
+    } catch (IOException | RuntimeException e) {
+      channel = null;
+      opened.close();
+      throw e;
+    }
+  }
+
+  private void initialize(int slots) throws IOException {
+    slotCount = slots;
+    logEnd = logStart();
+    liveCount = 0;
+    usedSlots = 0;
+    deadBytes = 0;
+    data = channel.map(FileChannel.MapMode.READ_WRITE, 0, logEnd + INITIAL_LOG_SIZE);
+    data.putInt(MAGIC_OFFSET, MAGIC);
+    data.putInt(VERSION_OFFSET, VERSION);
+    data.putInt(SLOTS_OFFSET, slotCount);
+    data.putInt(CLEAN_OFFSET, 0);
+    writeCounters();
+  }
+
+  // CRC が一致するレコードを先頭から読み直して索引を作り直す
+  private void rebuild() {
+    for (int i = 0; i < slotCount; i++) {
+      int slot = HEADER_SIZE + i * SLOT_SIZE;
+      data.putInt(slot, 0);
+      data.putLong(slot + 4, 0);
+    }
+    liveCount = 0;
+    usedSlots = 0;
+    deadBytes = 0;
+    long position = logStart();
+    int length;
+    while ((length = validRecordLength(position)) > 0) {
+      ByteBuffer key = keyOf(position);
+      int hash = hash(key);
+      link(findSlot(hash, key), hash, position, length);
+      position += length;
+    }
+    logEnd = position;
+    writeCounters();
+  }
+
+  /**
+   * データはファイルに直接書き込まれているため、保存ではメモリマップを fsync します
+   *
+   * @param snapshot 別スレッドで書き込むためにデータのコピーを取るか
+   * @return データを書き込む {@link DataWriter}
+   */
+  @Override
+  protected DataWriter createWriter(boolean snapshot) {
+    return FORCE;
+  }
+
+  @Override
+  protected void writeFile(DataWriter writer) {
+    if (writer != FORCE) {
+      super.writeFile(writer);
+      return;
+    }
+    boolean compact;
+    MappedByteBuffer mapped;
+    synchronized (this) {
+      if (channel == null) {
+        return;
+      }
+      compact = (deadBytes > COMPACT_MIN_DEAD && deadBytes > (logEnd - logStart()) / 2)
+          || usedSlots >= slotCount / 4 * 3;
+      compactRequested = false;
+      mapped = data;
+    }
+    // fsync やコンパクションの書き出しの間も get や put を止めないように、ロックを離してから行う
+    if (compact) {
+      compact();
+    } else {
+      mapped.force();
+    }
+  }
+
+  /**
+   * メモリマップしたファイルは書き込みのたびに更新されるため、変更の監視には対応していません
+   *
+   * @param subscriber 変更されたキーを受け取る処理
+   * @throws UnsupportedOperationException 常に
+   */
+  @Override
+  public void watch(Consumer<Set<String>> subscriber) {
+    throw new UnsupportedOperationException(paths + " は変更を監視できません");
+  }
+
+  /**
+   * キーの値を取得します
+   * <p>
+   * コンパクションはいつでも (put した後のI/Oスレッドでも) ファイルをその場で書き直すため、
+   * メモリマップを直接参照せずに値をコピーした読み取り専用の {@link ByteBuffer} を返します
+   *
+   * @param key キー
+   * @return 値 (存在しない場合はnull)
+   */
+  public @Nullable ByteBuffer get(@NotNull String key) {
+    byte[] bytes = getBytes(key);
+    return bytes == null ? null : ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+  }
+
+  /**
+   * キーの値をコピーして取得します
+   *
+   * @param key キー
+   * @return 値 (存在しない場合はnull)
+   */
+  public synchronized byte @Nullable [] getBytes(@NotNull String key) {
+    long offset = offsetOf(key);
+    if (offset == 0) {
+      return null;
+    }
+    int position = (int) offset;
+    int valueLength = data.getInt(position + 8);
+    if (valueLength == TOMBSTONE) {
+      return null;
+    }
+    byte[] bytes = new byte[valueLength];
+    data.get(position + RECORD_HEADER_SIZE + data.getInt(position + 4), bytes);
+    return bytes;
+  }
+
+  /**
+   * @param key キー
+   * @return キーが存在するか
+   */
+  public synchronized boolean has(@NotNull String key) {
+    long offset = offsetOf(key);
+    return offset != 0 && data.getInt((int) offset + 8) != TOMBSTONE;
+  }
+
+  /**
+   * キーに値を設定します
+   *
+   * @param key   キー (空文字は使えません)
+   * @param value 値
+   */
+  public void put(@NotNull String key, byte @NotNull [] value) {
+    put(key, ByteBuffer.wrap(value));
+  }
+
+  /**
+   * キーに値を設定します
+   * <p>
+   * value の position から limit までが書き込まれます (value の position は変わりません)
+   *
+   * @param key   キー (空文字は使えません)
+   * @param value 値
+   */
+  public void put(@NotNull String key, @NotNull ByteBuffer value) {
+    byte[] keyBytes = toKey(key);
+    ByteBuffer source = value.duplicate();
+    boolean compact;
+    while (true) {
+      synchronized (this) {
+        checkOpen();
+        if (usedSlots < slotCount - slotCount / 8) {
+          compact = append(keyBytes, source);
+          break;
+        }
+      }
+      // I/Oスレッドのコンパクションが間に合わず索引の空きがほとんどない場合だけ、このスレッドでコンパクションする
+      compact();
+    }
+    if (compact) {
+      // writeFile は writeLock の後にこのオブジェクトのロックを取るため、ロックを離してから要求する
+      saveFileAsync();
+    }
+  }
+
+  /**
+   * キーを削除します
+   *
+   * @param key キー
+   * @return キーが存在したか
+   */
+  public synchronized boolean remove(@NotNull String key) {
+    if (!has(key)) {
+      return false;
+    }
+    append(toKey(key), null);
+    return true;
+  }
+
+  /**
+   * @return 保存されているキーの数
+   */
+  public synchronized int size() {
+    return liveCount;
+  }
+
+  /**
+   * @return 保存されているキー
+   */
+  public synchronized Set<String> keys() {
+    Set<String> keys = new HashSet<>();
+    for (int i = 0; i < slotCount; i++) {
+      long offset = data.getLong(HEADER_SIZE + i * SLOT_SIZE + 4);
+      if (offset != 0 && data.getInt((int) offset + 8) != TOMBSTONE) {
+        keys.add(StandardCharsets.UTF_8.decode(keyOf(offset)).toString());
+      }
+    }
+    return keys;
+  }
+
+  /**
+   * 最新の値だけをファイルの先頭から書き直し、不要になったレコードを取り除きます
+   * <p>
+   * メモリマップしたファイルは置き換えられない (Windows) ため、書き直す内容をまず {@link #file} + ".compact" に
+   * {@link #writeAtomically(File, DataWriter, boolean, boolean)} で書き出してからその場で書き直します
+   * 書き出しと fsync はロックを離して行うため、その間も {@link #get(String)} や {@link #put(String, ByteBuffer)} は止まりません
+   * ロックするのは、書き出した後に追記されたレコードを加えて書き直す間だけです
+   * 書き直しの途中で停止した場合は、次の {@link #loadData()} で ".compact" から書き直します
+   */
+  public void compact() {
+    synchronized (compactLock) {
+      MappedByteBuffer compacted = null;
+      for (int attempt = 0; compacted == null; attempt++) {
+        Compaction compaction;
+        synchronized (this) {
+          checkOpen();
+          compaction = snapshot();
+          if (attempt >= COMPACT_ATTEMPTS) {
+            // 追記が多く、書き出している間に索引に入りきらなくなる場合はロックしたまま行う
+            writeJournal(compaction);
+            compacted = swap(compaction);
+            break;
+          }
+        }
+        writeJournal(compaction);
+        synchronized (this) {
+          checkOpen();
+          compacted = swap(compaction);
+        }
+      }
+      finishCompaction(compacted);
+    }
+  }
+
+  // 生きているレコードの位置を記録する (ログは追記だけのため、記録したレコードはロックを離しても変わらない)
+  private Compaction snapshot() {
+    int count = 0;
+    long[] offsets = new long[liveCount];
+    int[] hashes = new int[liveCount];
+    for (int i = 0; i < slotCount; i++) {
+      int slot = HEADER_SIZE + i * SLOT_SIZE;
+      long offset = data.getLong(slot + 4);
+      if (offset != 0 && data.getInt((int) offset + 8) != TOMBSTONE) {
+        offsets[count] = offset;
+        hashes[count] = data.getInt(slot);
+        count++;
+      }
+    }
+    return new Compaction(data, logEnd, tableSize(count), count, offsets, hashes);
+  }
+
+  // スナップショットのレコードを書き直した後の内容を .compact に書き出す
+  private void writeJournal(Compaction compaction) {
+    int slots = compaction.slots;
+    ByteBuffer table = ByteBuffer.allocate(slots * SLOT_SIZE);
+    long position = HEADER_SIZE + (long) slots * SLOT_SIZE;
+    for (int i = 0; i < compaction.count; i++) {
+      int index = compaction.hashes[i] & (slots - 1);
+      while (table.getLong(index * SLOT_SIZE + 4) != 0) {
+        index = (index + 1) & (slots - 1);
+      }
+      table.putInt(index * SLOT_SIZE, compaction.hashes[i]);
+      table.putLong(index * SLOT_SIZE + 4, position);
+      position += recordLength(compaction.source, compaction.offsets[i]);
+    }
+    if (position > Integer.MAX_VALUE) {
+      throw new IllegalStateException(paths + " が2GBを超えるため書き込めません");
+    }
+    compaction.end = position;
+
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putInt(MAGIC_OFFSET, MAGIC);
+    header.putInt(VERSION_OFFSET, VERSION);
+    header.putInt(SLOTS_OFFSET, slots);
+    header.putLong(LOG_END_OFFSET, position);
+    header.putInt(LIVE_OFFSET, compaction.count);
+    header.putInt(USED_OFFSET, compaction.count);
+    // 書き直した後も fsync が終わるまでは書き直し中とする
+    header.putInt(COMPACTING_OFFSET, 1);
+    try {
+      // 元のレコードを上書きする前に、書き直す内容をすべて書き出しておく
+      writeAtomically(compactFile(), output -> {
+        output.write(header.array());
+        output.write(table.array());
+        byte[] buffer = new byte[8192];
+        for (int i = 0; i < compaction.count; i++) {
+          int offset = (int) compaction.offsets[i];
+          int length = recordLength(compaction.source, offset);
+          for (int done = 0; done < length; ) {
+            int chunk = Math.min(buffer.length, length - done);
+            compaction.source.get(offset + done, buffer, 0, chunk);
+            output.write(buffer, 0, chunk);
+            done += chunk;
+          }
+        }
+      }, true, false);
+    } catch (IOException e) {
+      message.logError("Failed to compact file: " + paths);
+      throw new RuntimeException(e);
+    }
+  }
+
+  // .compact の内容でその場で書き直し、スナップショットの後に追記されたレコードを後ろに追記し直す
+  // 追記されたレコードが索引に入りきらない場合は何もせずにnullを返す
+  private @Nullable MappedByteBuffer swap(Compaction compaction) {
+    byte[] appended = new byte[(int) (logEnd - compaction.logEnd)];
+    data.get((int) compaction.logEnd, appended);
+    int records = 0;
+    for (int position = 0; position < appended.length; records++) {
+      position += recordLength(ByteBuffer.wrap(appended), position);
+    }
+    if (compaction.count + records >= compaction.slots - compaction.slots / 8) {
+      return null;
+    }
+
+    File journal = compactFile();
+    try {
+      // 書き直しの途中で停止したことが分かるように、先に印をディスクに書き込む
+      data.putInt(COMPACTING_OFFSET, 1);
+      data.force(0, HEADER_SIZE);
+      ensureCapacity(compaction.end);
+      copyCompaction(journal, logEnd);
+    } catch (IOException | RuntimeException e) {
+      // 書き直しの途中の索引は使えないため閉じる (次の読み込みで .compact から書き直す)
+      message.logError("Failed to compact file: " + paths);
+      closeChannel();
+      throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+    }
+    slotCount = compaction.slots;
+    logEnd = compaction.end;
+    liveCount = compaction.count;
+    usedSlots = compaction.count;
+    deadBytes = 0;
+    for (int position = 0; position < appended.length; ) {
+      int length = recordLength(ByteBuffer.wrap(appended), position);
+      ensureCapacity(logEnd + length);
+      data.put((int) logEnd, appended, position, length);
+      ByteBuffer key = keyOf(logEnd);
+      int hash = hash(key);
+      link(findSlot(hash, key), hash, logEnd, length);
+      logEnd += length;
+      position += length;
+    }
+    writeCounters();
+    compactRequested = false;
+    return data;
+  }
+
+  // 書き直した内容を fsync してから印を消し、.compact を削除する (ロックは取らない)
+  private void finishCompaction(MappedByteBuffer compacted) {
+    compacted.force();
+    synchronized (this) {
+      compacted.putInt(COMPACTING_OFFSET, 0);
+      compacted.force(0, HEADER_SIZE);
+    }
+    try {
+      Files.deleteIfExists(compactFile().toPath());
+    } catch (IOException e) {
+      message.logWarn("Failed to delete file: " + compactFile().getName() + " (" + e.getMessage()
+          + ")");
+    }
+  }
+
+  // 書き出したコンパクションの内容をメモリマップの先頭に書き込み、clearTo までの古いレコードを消す
+  private void copyCompaction(File journal, long clearTo) throws IOException {
+    try (FileChannel input = FileChannel.open(journal.toPath(), StandardOpenOption.READ)) {
+      int size = (int) input.size();
+      // ヘッダー (書き直し中の印) を先に書き込む
+      ByteBuffer target = data.slice(0, size);
+      while (target.hasRemaining()) {
+        if (input.read(target) < 0) {
+          throw new IOException(journal.getName() + " が途中で終わっています");
+        }
+      }
+      // 古いレコードが残っていると、索引を再構築するときにログの続きとして読み込まれてしまう
+      byte[] zeros = new byte[8192];
+      for (int position = size; position < clearTo; position += zeros.length) {
+        data.put(position, zeros, 0, (int) Math.min(zeros.length, clearTo - position));
+      }
+    }
+  }
+
+  // 前回のコンパクションが書き直しの途中で止まっていた場合は、書き出した内容から書き直す
+  private void recoverCompaction() throws IOException {
+    File journal = compactFile();
+    if (!journal.exists()) {
+      return;
+    }
+    try (FileChannel input = FileChannel.open(journal.toPath(), StandardOpenOption.READ);
+        FileChannel output = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      if (isRewritten(input, output)) {
+        // 書き直しが始まる前か、書き直しが終わった後に停止した (ファイルの内容をそのまま使う)
+        if (output.size() >= HEADER_SIZE) {
+          ByteBuffer zero = ByteBuffer.allocate(4);
+          while (zero.hasRemaining()) {
+            output.write(zero, COMPACTING_OFFSET + zero.position());
+          }
+        }
+      } else {
+        message.logWarn(paths + " のコンパクションが中断されたため " + journal.getName() + " から書き直します");
+        long size = input.size();
+        for (long position = 0; position < size; ) {
+          position += input.transferTo(position, size - position, output);
+        }
+        // どこまで古いレコードが残っているか分からないため、ファイルの最後まで消す
+        long end = output.size();
+        ByteBuffer zeros = ByteBuffer.allocate(8192);
+        for (long position = size; position < end; position += zeros.capacity()) {
+          zeros.clear().limit((int) Math.min(zeros.capacity(), end - position));
+          while (zeros.hasRemaining()) {
+            output.write(zeros, position + zeros.position());
+          }
+        }
+      }
+      output.force(true);
+    }
+    Files.delete(journal.toPath());
+  }
+
+  // ファイルが書き直しの途中ではないか (印がないか、.compact のレコードがすべて書き込まれているか)
+  private static boolean isRewritten(FileChannel journal, FileChannel file) throws IOException {
+    ByteBuffer marker = ByteBuffer.allocate(4);
+    if (file.size() < HEADER_SIZE || file.read(marker, COMPACTING_OFFSET) != 4
+        || marker.getInt(0) != 1) {
+      return true;
+    }
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    if (!readFully(journal, header, 0)) {
+      return false;
+    }
+    // 索引とヘッダーは書き直した後の追記で変わるため、レコードだけを比べる
+    long start = HEADER_SIZE + (long) header.getInt(SLOTS_OFFSET) * SLOT_SIZE;
+    long end = header.getLong(LOG_END_OFFSET);
+    ByteBuffer expected = ByteBuffer.allocate(8192);
+    ByteBuffer actual = ByteBuffer.allocate(8192);
+    for (long position = start; position < end; position += expected.capacity()) {
+      int length = (int) Math.min(expected.capacity(), end - position);
+      if (!readFully(journal, expected.clear().limit(length), position)
+          || !readFully(file, actual.clear().limit(length), position)
+          || !expected.flip().equals(actual.flip())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // ファイルが途中で終わっている場合はfalseを返す
+  private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    int start = buffer.position();
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position() - start) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private File compactFile() {
+    return new File(file.getPath() + COMPACT_EXTENSION);
+  }
+
+  /**
+   * メモリマップを fsync してファイルを閉じます
+   * <p>
+   * 閉じた後に {@link #get(String)} で取得した {@link ByteBuffer} は引き続き読み取れます
+   */
+  public void close() {
+    // コンパクションが終わるのを待つ
+    synchronized (compactLock) {
+      synchronized (this) {
+        if (channel == null) {
+          return;
+        }
+        data.putInt(CLEAN_OFFSET, 1);
+        data.force();
+        closeChannel();
+      }
+    }
+  }
+
+  private void closeChannel() {
+    if (channel == null) {
+      return;
+    }
+    try {
+      channel.close();
+    } catch (IOException e) {
+      message.logWarn("Failed to close file: " + paths + " (" + e.getMessage() + ")");
+    }
+    channel = null;
+  }
+
+  private void checkOpen() {
+    if (channel == null) {
+      throw new IllegalStateException(paths + " は閉じられています");
+    }
+  }
+
+  // 索引が埋まってきたため、I/Oスレッドでコンパクションする必要がある場合はtrueを返す
+  private boolean append(byte[] key, @Nullable ByteBuffer value) {
+    checkOpen();
+    boolean requestCompaction = false;
+    if (value != null && usedSlots >= slotCount / 4 * 3 && !compactRequested) {
+      compactRequested = true;
+      requestCompaction = true;
+    }
+    ByteBuffer keyBuffer = ByteBuffer.wrap(key);
+    int hash = hash(keyBuffer);
+    int slot = findSlot(hash, keyBuffer);
+    int valueLength = value == null ? TOMBSTONE : value.remaining();
+    int length = RECORD_HEADER_SIZE + key.length + Math.max(0, valueLength);
+    ensureCapacity(logEnd + length);
+
+    int position = (int) logEnd;
+    data.putInt(position + 4, key.length);
+    data.putInt(position + 8, valueLength);
+    data.put(position + RECORD_HEADER_SIZE, key);
+    if (value != null) {
+      data.put(position + RECORD_HEADER_SIZE + key.length, value, value.position(), valueLength);
+    }
+    data.putInt(position, checksum(position, length));
+
+    link(slot, hash, position, length);
+    logEnd = position + length;
+    writeCounters();
+    return requestCompaction;
+  }
+
+  // スロットをレコードに向け、件数と不要なバイト数を更新する
+  private void link(int slot, int hash, long offset, int length) {
+    long previous = data.getLong(slot + 4);
+    if (previous == 0) {
+      usedSlots++;
+    } else if (data.getInt((int) previous + 8) != TOMBSTONE) {
+      // 削除のレコードは書き込んだときに数えているため、生きていたレコードだけを数える
+      deadBytes += recordLength(previous);
+      liveCount--;
+    }
+    if (data.getInt((int) offset + 8) == TOMBSTONE) {
+      // 削除のレコードは次のコンパクションで不要になる
+      deadBytes += length;
+    } else {
+      liveCount++;
+    }
+    data.putInt(slot, hash);
+    data.putLong(slot + 4, offset);
+  }
+
+  private void ensureCapacity(long required) {
+    if (required <= data.capacity()) {
+      return;
+    }
+    if (required > Integer.MAX_VALUE) {
+      throw new IllegalStateException(paths + " が2GBを超えるため書き込めません");
+    }
+    long size = Math.min(Integer.MAX_VALUE, Math.max(required, (long) data.capacity() * 2));
+    try {
+      data = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private void writeCounters() {
+    data.putLong(LOG_END_OFFSET, logEnd);
+    data.putInt(LIVE_OFFSET, liveCount);
+    data.putInt(USED_OFFSET, usedSlots);
+    data.putLong(DEAD_OFFSET, deadBytes);
+  }
+
+  private long offsetOf(String key) {
+    checkOpen();
+    ByteBuffer keyBuffer = ByteBuffer.wrap(toKey(key));
+    return data.getLong(findSlot(hash(keyBuffer), keyBuffer) + 4);
+  }
+
+  // キーのレコードを指すスロット、なければ空のスロットの位置を返す
+  private int findSlot(int hash, ByteBuffer key) {
+    int mask = slotCount - 1;
+    int index = hash & mask;
+    for (int i = 0; i < slotCount; i++) {
+      int slot = HEADER_SIZE + index * SLOT_SIZE;
+      long offset = data.getLong(slot + 4);
+      if (offset == 0 || (data.getInt(slot) == hash && keyOf(offset).equals(key))) {
+        return slot;
+      }
+      index = (index + 1) & mask;
+    }
+    throw new IllegalStateException(paths + " の索引に空きがありません");
+  }
+
+  // position のレコードが壊れていなければその長さ、そうでなければ-1を返す
+  private int validRecordLength(long position) {
+    int capacity = data.capacity();
+    if (position + RECORD_HEADER_SIZE > capacity) {
+      return -1;
+    }
+    int offset = (int) position;
+    int keyLength = data.getInt(offset + 4);
+    int valueLength = data.getInt(offset + 8);
+    if (keyLength <= 0 || valueLength < TOMBSTONE) {
+      return -1;
+    }
+    long length = RECORD_HEADER_SIZE + (long) keyLength + Math.max(0, valueLength);
+    if (position + length > capacity || checksum(offset, (int) length) != data.getInt(offset)) {
+      return -1;
+    }
+    return (int) length;
+  }
+
+  private int checksum(int offset, int length) {
+    CRC32 crc = new CRC32();
+    crc.update(data.slice(offset + 4, length - 4));
+    return (int) crc.getValue();
+  }
+
+  private int recordLength(long offset) {
+    return recordLength(data, offset);
+  }
+
+  private static int recordLength(ByteBuffer buffer, long offset) {
+    int position = (int) offset;
+    return RECORD_HEADER_SIZE + buffer.getInt(position + 4)
+        + Math.max(0, buffer.getInt(position + 8));
+  }
+
+  private ByteBuffer keyOf(long offset) {
+    int position = (int) offset;
+    return data.slice(position + RECORD_HEADER_SIZE, data.getInt(position + 4));
+  }
+
+  private long logStart() {
+    return HEADER_SIZE + (long) slotCount * SLOT_SIZE;
+  }
+
+  private static int tableSize(int entries) {
+    int slots = MIN_SLOTS;
+    while (slots < entries * 2) {
+      slots <<= 1;
+    }
+    return slots;
+  }
+
+  private static byte[] toKey(String key) {
+    if (key.isEmpty()) {
+      throw new IllegalArgumentException("空のキーは使えません");
+    }
+    return key.getBytes(StandardCharsets.UTF_8);
+  }
+
+  // FNV-1a (ファイルに保存するため String#hashCode や ByteBuffer#hashCode には依存しない)
+  private static int hash(ByteBuffer key) {
+    int hash = 0x811C9DC5;
+    for (int i = key.position(); i < key.limit(); i++) {
+      hash ^= key.get(i) & 0xFF;
+      hash *= 0x01000193;
+    }
+    return hash ^ (hash >>> 16);
+  }
+
+  // コンパクションのスナップショット
+  private static final class Compaction {
+
+    // 書き出しに使うメモリマップ (put で作り直されても、記録したレコードは変わらない)
+    private final MappedByteBuffer source;
+    private final long logEnd;
+    private final int slots;
+    private final int count;
+    private final long[] offsets;
+    private final int[] hashes;
+    // 書き直した後のログの終わり (writeJournal で決まる)
+    private long end;
+
+    Compaction(MappedByteBuffer source, long logEnd, int slots, int count, long[] offsets,
+        int[] hashes) {
+      this.source = source;
+      this.logEnd = logEnd;
+      this.slots = slots;
+      this.count = count;
+      this.offsets = offsets;
+      this.hashes = hashes;
+    }
+  }
+
+}
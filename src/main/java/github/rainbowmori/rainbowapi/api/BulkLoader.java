@@ -0,0 +1,130 @@
+package github.rainbowmori.rainbowapi.api;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * フォルダーの中のファイルをまとめて並列に読み込みます
+ * <pre>
+ * BulkLoader.Result&lt;JsonAPI&gt; result = BulkLoader.load(plugin, "players", ".json",
+ *     (name, path) -&gt; new JsonAPI(plugin, name, path), null);
+ * </pre>
+ */
+public final class BulkLoader {
+
+  private BulkLoader() {
+  }
+
+  /**
+   * 利用できるすべてのCPUで読み込みます
+   *
+   * @see #load(Plugin, String, String, BiFunction, Progress, int)
+   */
+  public static <F extends FileAPI<?>> Result<F> load(Plugin plugin, String path,
+      String extension, BiFunction<String, String, F> factory, @Nullable Progress progress) {
+    return load(plugin, path, extension, factory, progress,
+        Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * プラグインのフォルダーの path にある extension のファイルを {@link ForkJoinPool} で並列に読み込みます
+   * <p>
+   * 読み込みが終わるまで呼び出したスレッドを止めます factory と progress は読み込みのスレッドから呼ばれます
+   *
+   * @param plugin      読み込みたいフォルダーのプラグイン
+   * @param path        ファイル階層
+   * @param extension   読み込むファイルの拡張子 (".json" など)
+   * @param factory     (拡張子を除いたファイルの名前, path) から {@link FileAPI} を作成する処理
+   * @param progress    1つ読み込むたびに呼ばれる処理
+   * @param parallelism 同時に読み込むスレッドの数
+   * @param <F>         読み込む {@link FileAPI}
+   * @return 読み込んだファイルと、読み込めなかったファイルのエラー ({@link FileAPI#getLoadError()} を含む)
+   */
+  public static <F extends FileAPI<?>> Result<F> load(Plugin plugin, String path,
+      String extension, BiFunction<String, String, F> factory, @Nullable Progress progress,
+      int parallelism) {
+    File directory = path == null || path.isEmpty() ? plugin.getDataFolder()
+        : new File(plugin.getDataFolder(), path);
+    File[] files = directory.listFiles(
+        file -> file.isFile() && file.getName().endsWith(extension));
+    Map<String, F> loaded = new ConcurrentHashMap<>();
+    Map<String, Throwable> errors = new ConcurrentHashMap<>();
+    if (files == null || files.length == 0) {
+      return new Result<>(loaded, errors);
+    }
+
+    int total = files.length;
+    AtomicInteger done = new AtomicInteger();
+    ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+    try {
+      List<ForkJoinTask<?>> tasks = new ArrayList<>(total);
+      for (File file : files) {
+        String fileName = file.getName();
+        String name = fileName.substring(0, fileName.length() - extension.length());
+        tasks.add(pool.submit(() -> {
+          try {
+            F api = factory.apply(name, path);
+            Throwable error = api.getLoadError();
+            if (error == null) {
+              loaded.put(name, api);
+            } else {
+              // 壊れたファイルを空のデータとして扱わない
+              errors.put(name, error);
+            }
+          } catch (Throwable t) {
+            errors.put(name, t);
+          }
+          if (progress != null) {
+            progress.update(done.incrementAndGet(), total);
+          }
+        }));
+      }
+      for (ForkJoinTask<?> task : tasks) {
+        task.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    } finally {
+      pool.shutdown();
+    }
+    return new Result<>(loaded, errors);
+  }
+
+  /**
+   * 読み込みの進捗を受け取る処理
+   */
+  @FunctionalInterface
+  public interface Progress {
+
+    /**
+     * @param loaded 読み込みが終わったファイルの数 (失敗したものを含む)
+     * @param total  読み込むファイルの数
+     */
+    void update(int loaded, int total);
+  }
+
+  /**
+   * 読み込みの結果
+   *
+   * @param files  拡張子を除いたファイルの名前と読み込んだ {@link FileAPI}
+   * @param errors 拡張子を除いたファイルの名前と読み込めなかった原因
+   * @param <F>    読み込んだ {@link FileAPI}
+   */
+  public record Result<F>(Map<String, F> files, Map<String, Throwable> errors) {
+
+  }
+
+}
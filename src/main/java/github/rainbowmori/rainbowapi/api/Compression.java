@@ -0,0 +1,110 @@
+package github.rainbowmori.rainbowapi.api;
+
+import github.rainbowmori.rainbowapi.api.FileAPI.DataWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * {@link FileAPI} のファイルの圧縮形式
+ * <p>
+ * 読み書きはストリームで圧縮、展開するため、ファイル全体をメモリ上のバイト列にすることはありません
+ */
+public enum Compression {
+
+  /**
+   * 圧縮しない
+   */
+  NONE(""),
+  /**
+   * gzip (拡張子 .gz)
+   */
+  GZIP(".gz"),
+  /**
+   * zlib 形式の deflate (拡張子 .deflate)
+   */
+  DEFLATE(".deflate");
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private final String extension;
+
+  Compression(String extension) {
+    this.extension = extension;
+  }
+
+  /**
+   * @return ファイルの拡張子の後ろにつける拡張子
+   */
+  public String getExtension() {
+    return extension;
+  }
+
+  /**
+   * input を展開する {@link InputStream} を返します
+   *
+   * @param input 圧縮されたデータ
+   * @return 展開したデータ
+   * @throws IOException 圧縮形式が正しくない場合
+   */
+  public InputStream decompress(InputStream input) throws IOException {
+    switch (this) {
+      case GZIP:
+        return new GZIPInputStream(input, BUFFER_SIZE);
+      case DEFLATE:
+        return new InflaterInputStream(input);
+      default:
+        return input;
+    }
+  }
+
+  /**
+   * writer が書き込む内容を圧縮して書き込む {@link DataWriter} を返します
+   *
+   * @param writer 書き込む内容
+   * @param level  圧縮レベル (0-9 または {@link Deflater#DEFAULT_COMPRESSION})
+   * @return 圧縮して書き込む {@link DataWriter}
+   */
+  public DataWriter compress(DataWriter writer, int level) {
+    if (this == NONE) {
+      return writer;
+    }
+    return new DataWriter() {
+      @Override
+      public void write(OutputStream output) throws IOException {
+        Deflater deflater = new Deflater(level, Compression.this == GZIP);
+        try {
+          DeflaterOutputStream compressed = Compression.this == GZIP
+              ? new LevelGZIPOutputStream(output, deflater)
+              : new DeflaterOutputStream(output, deflater, BUFFER_SIZE);
+          writer.write(compressed);
+          // output は閉じずに圧縮だけを終わらせる
+          compressed.finish();
+        } finally {
+          deflater.end();
+        }
+      }
+
+      @Override
+      public void committed() throws IOException {
+        writer.committed();
+      }
+    };
+  }
+
+  // GZIPOutputStream は Deflater を指定できないため、作成後に差し替える
+  private static final class LevelGZIPOutputStream extends GZIPOutputStream {
+
+    LevelGZIPOutputStream(OutputStream output, Deflater deflater) throws IOException {
+      super(output, BUFFER_SIZE);
+      this.def.end();
+      this.def = deflater;
+    }
+  }
+
+}
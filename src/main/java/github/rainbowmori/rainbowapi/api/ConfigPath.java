@@ -0,0 +1,21 @@
+package github.rainbowmori.rainbowapi.api;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * {@link ConfigView} で読み込む値のパスを指定します
+ * <p>
+ * 指定しない場合はレコードの要素名 (インターフェースの場合はメソッド名) がパスになります
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.RECORD_COMPONENT, ElementType.METHOD})
+public @interface ConfigPath {
+
+  /**
+   * @return "a.b.c" の形式のパス
+   */
+  String value();
+}
@@ -0,0 +1,284 @@
+package github.rainbowmori.rainbowapi.api;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.MemoryConfiguration;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * {@link YmlAPI} の内容をレコードやインターフェースに読み込んだスナップショット
+ * <p>
+ * パスの解決と値の変換は読み込み時に一度だけ行うため、{@link #get()} の値の取得はフィールドを読むだけです
+ * ファイルが読み込み直されると次の {@link #get()} で新しいスナップショットが作られます
+ * <pre>
+ * public record Settings(&#64;ConfigPath("game.max-players") int maxPlayers, String prefix) {}
+ *
+ * ConfigView&lt;Settings&gt; settings = ymlAPI.bind(Settings.class);
+ * settings.get().maxPlayers();
+ * </pre>
+ * 対応している型は プリミティブとそのラッパー、{@link String}、enum、{@link List}、
+ * 入れ子のレコードとインターフェース (セクション)、その他 {@link ConfigurationSection#get(String)} で取得できる型です
+ * java や Bukkit のインターフェース ({@link ConfigurationSection} など) はセクションとして読み込まず、そのままの値を返します
+ *
+ * @param <R> 読み込むレコードまたはインターフェース
+ */
+public final class ConfigView<R> {
+
+  private final YmlAPI api;
+  private final Class<R> type;
+  // snapshot を作成したときの YmlAPI のデータ
+  private volatile FileConfiguration source;
+  private volatile R snapshot;
+
+  ConfigView(YmlAPI api, Class<R> type) {
+    if (!type.isRecord() && !type.isInterface()) {
+      throw new IllegalArgumentException(type.getName() + " はレコードかインターフェースではありません");
+    }
+    this.api = api;
+    this.type = type;
+    refresh();
+  }
+
+  /**
+   * 現在のスナップショットを返します
+   * <p>
+   * {@link YmlAPI#getData()} が読み込み直されている場合は、新しいスナップショットを作成します
+   *
+   * @return スナップショット
+   */
+  public @NotNull R get() {
+    if (source != api.getData()) {
+      refresh();
+    }
+    return snapshot;
+  }
+
+  /**
+   * {@link YmlAPI#getData()} から新しいスナップショットを作成します
+   * <p>
+   * {@link YmlAPI#getData()} の値を変更した場合に呼んでください
+   */
+  public synchronized void refresh() {
+    FileConfiguration configuration = api.getData();
+    snapshot = bind(type, configuration);
+    source = configuration;
+  }
+
+  /**
+   * section を type に読み込みます
+   *
+   * @param type    レコードまたはインターフェース
+   * @param section 読み込むセクション
+   * @param <R>     読み込む型
+   * @return 読み込んだ値
+   */
+  public static <R> R bind(Class<R> type, ConfigurationSection section) {
+    if (type.isRecord()) {
+      return bindRecord(type, section);
+    }
+    if (type.isInterface()) {
+      return bindInterface(type, section);
+    }
+    throw new IllegalArgumentException(type.getName() + " はレコードかインターフェースではありません");
+  }
+
+  private static <R> R bindRecord(Class<R> type, ConfigurationSection section) {
+    RecordComponent[] components = type.getRecordComponents();
+    Class<?>[] parameterTypes = new Class<?>[components.length];
+    Object[] values = new Object[components.length];
+    for (int i = 0; i < components.length; i++) {
+      RecordComponent component = components[i];
+      ConfigPath path = component.getAnnotation(ConfigPath.class);
+      parameterTypes[i] = component.getType();
+      values[i] = convert(section, path == null ? component.getName() : path.value(),
+          component.getType(), component.getGenericType());
+    }
+    try {
+      Constructor<R> constructor = type.getDeclaredConstructor(parameterTypes);
+      constructor.setAccessible(true);
+      return constructor.newInstance(values);
+    } catch (ReflectiveOperationException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static <R> R bindInterface(Class<R> type, ConfigurationSection section) {
+    Map<Method, Object> values = new HashMap<>();
+    for (Method method : type.getMethods()) {
+      if (method.getParameterCount() != 0 || method.isDefault()
+          || Modifier.isStatic(method.getModifiers())) {
+        continue;
+      }
+      ConfigPath path = method.getAnnotation(ConfigPath.class);
+      values.put(method, convert(section, path == null ? method.getName() : path.value(),
+          method.getReturnType(), method.getGenericReturnType()));
+    }
+    Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+        (instance, method, args) -> {
+          if (values.containsKey(method)) {
+            return values.get(method);
+          }
+          switch (method.getName()) {
+            case "toString":
+              return type.getSimpleName() + values.values();
+            case "hashCode":
+              return System.identityHashCode(instance);
+            case "equals":
+              return instance == args[0];
+            default:
+              if (method.isDefault()) {
+                return InvocationHandler.invokeDefault(instance, method, args);
+              }
+              throw new UnsupportedOperationException(method.toString());
+          }
+        });
+    return type.cast(proxy);
+  }
+
+  private static Object convert(ConfigurationSection section, String path, Class<?> type,
+      Type genericType) {
+    if (isSection(type)) {
+      ConfigurationSection child = section.getConfigurationSection(path);
+      return bind(type, child == null ? new MemoryConfiguration() : child);
+    }
+    Object value = section.get(path);
+    if (type.isPrimitive()) {
+      return primitive(type, value);
+    }
+    if (value == null) {
+      return null;
+    }
+    if (type == String.class) {
+      return value.toString();
+    }
+    if (Number.class.isAssignableFrom(type) && value instanceof Number) {
+      return number(type, (Number) value);
+    }
+    if (type.isEnum()) {
+      return enumValue(type, value.toString());
+    }
+    if (type == List.class && value instanceof List) {
+      return list((List<?>) value, genericType);
+    }
+    if (type == Map.class && value instanceof ConfigurationSection) {
+      return Collections.unmodifiableMap(((ConfigurationSection) value).getValues(false));
+    }
+    if (!type.isInstance(value)) {
+      throw new IllegalArgumentException(
+          section.getCurrentPath() + "." + path + " を " + type.getSimpleName() + " に変換できません");
+    }
+    return value;
+  }
+
+  // 入れ子のセクションとして読み込む型か (ライブラリのインターフェースをプロキシにすると getParent() などで無限に辿ってしまう)
+  private static boolean isSection(Class<?> type) {
+    if (type.isRecord()) {
+      return true;
+    }
+    if (!type.isInterface() || ConfigurationSection.class.isAssignableFrom(type)) {
+      return false;
+    }
+    String packageName = type.getPackageName();
+    return !packageName.startsWith("java.") && !packageName.startsWith("javax.")
+        && !packageName.startsWith("org.bukkit.") && !packageName.startsWith("net.kyori.");
+  }
+
+  private static List<?> list(List<?> list, Type genericType) {
+    Class<?> element = Object.class;
+    if (genericType instanceof ParameterizedType) {
+      Type argument = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+      if (argument instanceof Class) {
+        element = (Class<?>) argument;
+      }
+    }
+    List<Object> result = new ArrayList<>(list.size());
+    for (Object value : list) {
+      if (value == null) {
+        result.add(null);
+      } else if (element == String.class) {
+        result.add(value.toString());
+      } else if (element.isEnum()) {
+        result.add(enumValue(element, value.toString()));
+      } else if (value instanceof Number && Number.class.isAssignableFrom(element)) {
+        result.add(number(element, (Number) value));
+      } else {
+        result.add(value);
+      }
+    }
+    return Collections.unmodifiableList(result);
+  }
+
+  // type (Integer や Double など) に変換する (対応していない型の場合はそのまま)
+  private static Object number(Class<?> type, Number value) {
+    if (type == Integer.class) {
+      return value.intValue();
+    }
+    if (type == Long.class) {
+      return value.longValue();
+    }
+    if (type == Double.class) {
+      return value.doubleValue();
+    }
+    if (type == Float.class) {
+      return value.floatValue();
+    }
+    if (type == Short.class) {
+      return value.shortValue();
+    }
+    if (type == Byte.class) {
+      return value.byteValue();
+    }
+    return value;
+  }
+
+  private static Object primitive(Class<?> type, Object value) {
+    if (type == boolean.class) {
+      return value instanceof Boolean ? value : Boolean.parseBoolean(String.valueOf(value));
+    }
+    Number number = value instanceof Number ? (Number) value
+        : value == null ? 0 : Double.valueOf(value.toString());
+    if (type == int.class) {
+      return number.intValue();
+    }
+    if (type == long.class) {
+      return number.longValue();
+    }
+    if (type == double.class) {
+      return number.doubleValue();
+    }
+    if (type == float.class) {
+      return number.floatValue();
+    }
+    if (type == short.class) {
+      return number.shortValue();
+    }
+    if (type == byte.class) {
+      return number.byteValue();
+    }
+    if (type == char.class) {
+      String string = String.valueOf(value);
+      return value == null || string.isEmpty() ? '\0' : string.charAt(0);
+    }
+    throw new IllegalArgumentException(type.getName());
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static Object enumValue(Class<?> type, String name) {
+    return Enum.valueOf((Class<? extends Enum>) type, name.toUpperCase(Locale.ROOT));
+  }
+
+}
@@ -2,11 +2,41 @@ package github.rainbowmori.rainbowapi.api;
 
 import com.google.gson.JsonObject;
 import github.rainbowmori.rainbowapi.util.PrefixUtil;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+import org.bukkit.Bukkit;
 import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.plugin.IllegalPluginAccessException;
 import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * ファイルを読み込むabstract class
@@ -18,12 +48,62 @@ import org.bukkit.plugin.Plugin;
 @SuppressWarnings("ResultOfMethodCallIgnored")
 public abstract class FileAPI<T> {
 
+  // 非同期保存でシリアライズと書き込みを行うI/O専用のスレッド
+  private static final ExecutorService IO_EXECUTOR = Executors.newFixedThreadPool(
+      Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2)),
+      new IOThreadFactory());
+
+  // 書き込みに使用するバッファのサイズ
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  // プラグインの名前ごとの PrefixUtil (ファイルごとに MiniMessage を解析しないように共有する)
+  private static final Map<String, PrefixUtil> MESSAGES = new ConcurrentHashMap<>();
+
   public final File file;
+  /**
+   * 保存する直前の世代のファイル ({@link #file} + ".bak")
+   */
+  public final File backupFile;
   public final String name, path, paths;
   protected final PrefixUtil message;
   protected final Plugin plugin;
+  protected final Compression compression;
   protected T data;
 
+  // createWriter をオーバーライドせずに saveFile をオーバーライドしたサブクラスの書き込み
+  private static final DataWriter SAVE_FILE = output -> {
+    throw new UnsupportedOperationException("saveFile で保存してください");
+  };
+
+  // ファイルへの書き込みを直列化するためのロック
+  private final Object writeLock = new Object();
+  // pendingWriter と pendingSave を保護するロック
+  private final Object saveLock = new Object();
+  // まだ書き込まれていない最新のスナップショット
+  private DataWriter pendingWriter;
+  private CompletableFuture<Void> pendingSave;
+  // 圧縮レベル
+  private volatile int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+  // 書き込み後に fsync するか
+  private volatile boolean sync = false;
+  // 書き込み前のファイルを .bak として残すか
+  private volatile boolean keepBackup = true;
+  // 読み込みに失敗して .bak から復元した場合は、次の保存で正常な .bak を上書きしない
+  private volatile boolean restoredFromBackup = false;
+  // 最後の読み込みで .bak からも読み込めなかった原因
+  private volatile Throwable loadError;
+  // write-behind の書き込み間隔 (tick) 0以下の場合は無効
+  private volatile long writeBehindTicks = 0;
+  // 保存されていない変更があるか
+  private final AtomicBoolean dirty = new AtomicBoolean();
+  // FileFlusher が最後に書き込んだtick (メインスレッドからのみ使用)
+  long lastFlushTick;
+  // 外部からの変更を受け取る購読者
+  private final List<Consumer<Set<String>>> subscribers = new CopyOnWriteArrayList<>();
+  // 最後に自分で書き込んだときのファイルの更新日時と大きさ (自分の書き込みを FileWatcher で無視するため)
+  private volatile long writtenModified = -1;
+  private volatile long writtenSize = -1;
+
   /**
    * 引数のプラグインのフォルダーの第一階層からnameのファイルを読み込みます
    *
@@ -43,13 +123,31 @@ public abstract class FileAPI<T> {
    * @param path   ファイル階層
    */
   public FileAPI(Plugin plugin, String name, String path) {
+    this(plugin, name, path, Compression.NONE);
+  }
+
+  /**
+   * 引数のプラグインのフォルダーの {@link #path} {@link #name} のファイルを compression で圧縮して読み書きします
+   * <p>
+   * ファイルの拡張子は {@link #getExtension()} の後ろに {@link Compression#getExtension()} をつけたものになります
+   *
+   * @param plugin      読み込みたいフォルダーのプラグイン
+   * @param name        読み込むファイルの名前
+   * @param path        ファイル階層
+   * @param compression 圧縮形式
+   */
+  public FileAPI(Plugin plugin, String name, String path, Compression compression) {
     Objects.requireNonNull(name);
-    this.name = name.endsWith(getExtension()) ? name : name + getExtension();
+    this.compression = Objects.requireNonNull(compression);
+    String extension = getExtension() + compression.getExtension();
+    this.name = name.endsWith(extension) ? name : name + extension;
     this.path = path == null || path.isEmpty() ? "" : File.separator + path;
     this.paths = path == null || path.isEmpty() ? name : path + File.separator + name;
     this.plugin = plugin;
-    this.message = new PrefixUtil("<gray>[<red>" + plugin.getName() + "<gray>] ");
+    this.message = MESSAGES.computeIfAbsent(plugin.getName(),
+        pluginName -> new PrefixUtil("<gray>[<red>" + pluginName + "<gray>] "));
     file = new File(plugin.getDataFolder() + this.path, this.name);
+    backupFile = new File(file.getPath() + ".bak");
     loadFile();
   }
 
@@ -84,15 +182,381 @@ public abstract class FileAPI<T> {
    */
   public abstract void loadData();
 
+  /**
+   * 保存するデータを書き込む {@link DataWriter} を作成します
+   * <p>
+   * snapshotがtrueの場合は呼び出したスレッドで {@link #data} のコピーを取り、
+   * 以降 {@link #data} が変更されても影響を受けない {@link DataWriter} を返す必要があります
+   * <p>
+   * 以前のバージョンでは {@link #saveFile()} が抽象メソッドでした
+   * オーバーライドしない場合は保存のたびにサブクラスの {@link #saveFile()} を呼び出すため、そのまま動きますが、
+   * {@link #saveFileAsync()} でもデータのコピーは取られず、I/Oスレッドから {@link #saveFile()} が呼ばれます
+   *
+   * @param snapshot 別スレッドで書き込むためにデータのコピーを取るか
+   * @return データを書き込む {@link DataWriter}
+   */
+  protected DataWriter createWriter(boolean snapshot) {
+    return SAVE_FILE;
+  }
+
   /**
    * データをファイルに保存
+   * <p>
+   * write-behind が有効な場合はすぐには書き込まず {@link #markDirty()} します
+   *
+   * @see #setWriteBehind(long)
    */
-  public abstract void saveFile();
+  public void saveFile() {
+    if (writeBehindTicks > 0) {
+      markDirty();
+      return;
+    }
+    DataWriter writer = createWriter(false);
+    if (writer == SAVE_FILE) {
+      throw new UnsupportedOperationException(
+          getClass().getName() + " は createWriter か saveFile をオーバーライドする必要があります");
+    }
+    synchronized (writeLock) {
+      synchronized (saveLock) {
+        // これより古いスナップショットは書き込む必要がない
+        pendingWriter = null;
+      }
+      writeFile(writer);
+    }
+  }
+
+  /**
+   * 呼び出したスレッドでデータのスナップショットを取り、シリアライズと書き込みはI/O専用のスレッドで行います
+   * <p>
+   * まだ書き込まれていない保存がある場合はスナップショットだけを最新のものに置き換え、同じ {@link CompletableFuture} を返します
+   *
+   * @return 書き込みが完了したら完了する {@link CompletableFuture}
+   */
+  public CompletableFuture<Void> saveFileAsync() {
+    DataWriter writer = createWriter(true);
+    CompletableFuture<Void> future;
+    synchronized (saveLock) {
+      boolean queued = pendingWriter != null;
+      pendingWriter = writer;
+      if (queued) {
+        return pendingSave;
+      }
+      future = new CompletableFuture<>();
+      pendingSave = future;
+    }
+    try {
+      IO_EXECUTOR.execute(() -> writePending(future));
+    } catch (RejectedExecutionException e) {
+      // I/Oスレッドが停止している場合 (サーバー停止中など) はこのスレッドで書き込む
+      // writeLock は saveLock より先に取るため、saveLock を離してから書き込む
+      writePending(future);
+    }
+    return future;
+  }
+
+  /**
+   * 保存されていない変更があることを記録します
+   * <p>
+   * {@link FileFlusher} が {@link #getWriteBehind()} tickに最大1回ファイルに書き込みます
+   */
+  public void markDirty() {
+    if (dirty.compareAndSet(false, true)) {
+      FileFlusher.register(this);
+    }
+  }
+
+  /**
+   * @return 保存されていない変更があるか
+   */
+  public boolean isDirty() {
+    return dirty.get();
+  }
+
+  /**
+   * 保存されていない変更がある場合は {@link #saveFileAsync()} ですぐに書き込みます
+   *
+   * @return 書き込みが完了したら完了する {@link CompletableFuture}
+   */
+  public CompletableFuture<Void> flush() {
+    FileFlusher.unregister(this);
+    if (!dirty.compareAndSet(true, false)) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return saveFileAsync();
+  }
+
+  private void writePending(CompletableFuture<Void> future) {
+    try {
+      synchronized (writeLock) {
+        DataWriter writer;
+        synchronized (saveLock) {
+          writer = pendingWriter;
+          pendingWriter = null;
+          if (pendingSave == future) {
+            pendingSave = null;
+          }
+        }
+        if (writer != null) {
+          writeFile(writer);
+        }
+      }
+      future.complete(null);
+    } catch (Throwable t) {
+      future.completeExceptionally(t);
+    }
+  }
+
+  /**
+   * writerの内容を {@link #file} に書き込みます
+   *
+   * @param writer 書き込む内容
+   * @see #writeAtomically(File, DataWriter, boolean, boolean)
+   */
+  protected void writeFile(DataWriter writer) {
+    if (writer == SAVE_FILE) {
+      saveFile();
+      return;
+    }
+    try {
+      writeAtomically(file, compression.compress(writer, compressionLevel), sync,
+          keepBackup && !restoredFromBackup);
+      restoredFromBackup = false;
+      writtenModified = file.lastModified();
+      writtenSize = file.length();
+      if (writtenSize == 0) {
+        // 空にしたファイルが壊れたものとして .bak から復元されないようにする
+        backupFile.delete();
+      }
+      writer.committed();
+    } catch (IOException e) {
+      message.logError("Failed to save file: " + paths);
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * 同じフォルダーの一時ファイルに書き込んでから、file に置き換えます
+   * <p>
+   * 書き込みの途中でサーバーが停止しても、file が書きかけの状態になることはありません
+   *
+   * @param file   書き込むファイル
+   * @param writer 書き込む内容
+   * @param sync   置き換える前に一時ファイルを fsync するか
+   * @param backup 置き換える前のファイルを file + ".bak" として残すか
+   * @throws IOException 書き込みに失敗した場合
+   */
+  public static void writeAtomically(File file, DataWriter writer, boolean sync, boolean backup)
+      throws IOException {
+    Path target = file.toPath().toAbsolutePath();
+    // 同じファイルへの書き込みが同時に行われても一時ファイルが重ならないように、名前が重複しないファイルを作る
+    Path temp = Files.createTempFile(target.getParent(), target.getFileName() + ".", ".tmp");
+    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      OutputStream output = new BufferedOutputStream(Channels.newOutputStream(channel),
+          BUFFER_SIZE);
+      writer.write(output);
+      output.flush();
+      if (sync) {
+        channel.force(true);
+      }
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(temp);
+      throw e;
+    }
+
+    if (backup && Files.exists(target)) {
+      Path backupPath = target.resolveSibling(target.getFileName() + ".bak");
+      Files.deleteIfExists(backupPath);
+      try {
+        // ハードリンクならコピーせずに前の世代を残せる
+        Files.createLink(backupPath, target);
+      } catch (IOException | UnsupportedOperationException e) {
+        Files.copy(target, backupPath, StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+
+    try {
+      Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * {@link #file} を読み込みます
+   * <p>
+   * 読み込みに失敗した場合や、{@link #file} が空で {@link #backupFile} が空でない場合は {@link #backupFile} から読み込みます
+   *
+   * @param reader ファイルの内容を読み込む処理
+   * @return 読み込んだデータ (どちらも読み込めなかった場合はnull)
+   */
+  protected final @Nullable T readFile(DataReader<T> reader) {
+    loadError = null;
+    Exception failure;
+    try {
+      T loaded = file.length() == 0 ? null : readFrom(file, reader);
+      if (loaded != null || backupFile.length() == 0) {
+        return loaded;
+      }
+      // 置き換えの途中でファイルが空になった場合などは、前の世代のほうが新しいデータを持っている
+      failure = new IOException(paths + " is empty");
+    } catch (IOException | RuntimeException e) {
+      failure = e;
+    }
+    if (backupFile.exists()) {
+      message.logWarn(paths + " の読み込みに失敗したため " + backupFile.getName() + " から読み込みます");
+      try {
+        T restored = readFrom(backupFile, reader);
+        restoredFromBackup = true;
+        return restored;
+      } catch (IOException | RuntimeException backupException) {
+        failure.addSuppressed(backupException);
+      }
+    }
+    message.logError("Failed to load file: " + paths + " (" + failure.getMessage() + ")");
+    loadError = failure;
+    return null;
+  }
+
+  /**
+   * 最後の読み込みで {@link #file} も {@link #backupFile} も読み込めず、空のデータになった原因を返します
+   *
+   * @return 原因 (読み込めた場合はnull)
+   */
+  public @Nullable Throwable getLoadError() {
+    return loadError;
+  }
+
+  /**
+   * {@link #readFile(DataReader)} を使わずに読み込むサブクラスが、読み込みの結果を記録します
+   *
+   * @param error 空のデータになった原因 (読み込めた場合はnull)
+   * @see #getLoadError()
+   */
+  protected void setLoadError(@Nullable Throwable error) {
+    this.loadError = error;
+  }
+
+  /**
+   * {@link #file} を読み込む {@link DataReader} を作成します
+   * <p>
+   * {@link #watch(Consumer)} で変更を読み込むときに使われます nullの場合は {@link #loadData()} で読み込みます
+   *
+   * @return {@link DataReader} (対応していない場合はnull)
+   */
+  protected @Nullable DataReader<T> createReader() {
+    return null;
+  }
+
+  /**
+   * 読み込み直す前と後のデータで変更されたキーを返します
+   *
+   * @param oldData 読み込み直す前のデータ
+   * @param newData 読み込み直した後のデータ
+   * @return 変更されたキー (キーごとに比較できない場合は、変更があればファイル全体を表す空文字)
+   */
+  protected Set<String> diffKeys(T oldData, T newData) {
+    return Objects.equals(oldData, newData) ? Set.of() : Set.of("");
+  }
+
+  /**
+   * ファイルが外部から変更されたら読み込み直し、変更されたキーを subscriber に通知します
+   * <p>
+   * 読み込みは {@link FileWatcher} のスレッドで行い、{@link #data} の置き換えと通知はメインスレッドで行います
+   * 保存されていない変更は破棄されます また、このAPIが書き込んだ変更は通知されません
+   *
+   * @param subscriber 変更されたキーを受け取る処理
+   * @see #diffKeys(Object, Object)
+   */
+  public void watch(Consumer<Set<String>> subscriber) {
+    subscribers.add(subscriber);
+    FileWatcher.register(this);
+  }
+
+  /**
+   * {@link #watch(Consumer)} をやめます
+   *
+   * @param subscriber {@link #watch(Consumer)} に渡した処理
+   */
+  public void unwatch(Consumer<Set<String>> subscriber) {
+    subscribers.remove(subscriber);
+    if (subscribers.isEmpty()) {
+      FileWatcher.unregister(this);
+    }
+  }
+
+  /**
+   * {@link #data} を読み込み直したデータに置き換えます
+   * <p>
+   * データから別の値を作っているサブクラスはオーバーライドして作り直してください
+   *
+   * @param newData 読み込み直したデータ
+   */
+  protected void replaceData(T newData) {
+    data = newData;
+  }
+
+  // FileWatcher のスレッドから呼ばれる
+  void reloadChanged() {
+    if (!file.exists()
+        || (file.lastModified() == writtenModified && file.length() == writtenSize)) {
+      return;
+    }
+    DataReader<T> reader = createReader();
+    T loaded = null;
+    if (reader != null) {
+      try {
+        loaded = readFrom(file, reader);
+      } catch (IOException | RuntimeException e) {
+        message.logError("Failed to reload file: " + paths + " (" + e.getMessage() + ")");
+        return;
+      }
+    }
+    T reloaded = loaded;
+    try {
+      Bukkit.getScheduler().runTask(plugin, () -> {
+        T old = data;
+        if (reloaded == null) {
+          loadData();
+        } else {
+          replaceData(reloaded);
+        }
+        Set<String> changed = reader == null ? Set.of("") : diffKeys(old, data);
+        if (!changed.isEmpty()) {
+          subscribers.forEach(subscriber -> subscriber.accept(changed));
+        }
+      });
+    } catch (IllegalPluginAccessException ignored) {
+      // プラグインが無効になっている
+    }
+  }
+
+  private T readFrom(File source, DataReader<T> reader) throws IOException {
+    try (InputStream input = openInput(source)) {
+      return reader.read(input);
+    }
+  }
+
+  /**
+   * source を読み込む {@link InputStream} を開きます
+   *
+   * @param source 読み込むファイル
+   * @return {@link InputStream}
+   * @throws IOException 開けなかった場合
+   */
+  protected InputStream openInput(File source) throws IOException {
+    InputStream input = new BufferedInputStream(Files.newInputStream(source.toPath()),
+        BUFFER_SIZE);
+    // 作成したばかりの空のファイルは圧縮されていない
+    return source.length() == 0 ? input : compression.decompress(input);
+  }
 
   /**
    * ファイル削除
    */
   public final void removeFile() {
+    backupFile.delete();
     if (file.delete()) {
       message.logInfo(paths + "を削除しました");
     }
@@ -130,4 +594,158 @@ public abstract class FileAPI<T> {
     return data;
   }
 
+  /**
+   * @return 圧縮形式
+   */
+  public Compression getCompression() {
+    return compression;
+  }
+
+  /**
+   * @return 圧縮レベル
+   */
+  public int getCompressionLevel() {
+    return compressionLevel;
+  }
+
+  /**
+   * 圧縮レベルを設定します (デフォルトは {@link Deflater#DEFAULT_COMPRESSION})
+   * <p>
+   * 小さいほどCPUの負荷が少なく、大きいほどファイルが小さくなります
+   *
+   * @param level 0-9 または {@link Deflater#DEFAULT_COMPRESSION}
+   */
+  public void setCompressionLevel(int level) {
+    if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+      throw new IllegalArgumentException("圧縮レベルは0から9です: " + level);
+    }
+    this.compressionLevel = level;
+  }
+
+  /**
+   * @return 書き込み後に fsync するか
+   */
+  public boolean isSync() {
+    return sync;
+  }
+
+  /**
+   * 書き込み後に fsync するかを設定します (デフォルトは false)
+   * <p>
+   * true にするとOSのクラッシュや電源断にも耐えますが、保存のたびにディスクへの書き込みを待ちます
+   *
+   * @param sync fsync するか
+   */
+  public void setSync(boolean sync) {
+    this.sync = sync;
+  }
+
+  /**
+   * @return 書き込み前のファイルを {@link #backupFile} として残すか
+   */
+  public boolean isKeepBackup() {
+    return keepBackup;
+  }
+
+  /**
+   * 書き込み前のファイルを {@link #backupFile} として残すかを設定します (デフォルトは true)
+   *
+   * @param keepBackup 残すか
+   */
+  public void setKeepBackup(boolean keepBackup) {
+    this.keepBackup = keepBackup;
+  }
+
+  /**
+   * @return write-behind の書き込み間隔 (tick) 0の場合は無効
+   */
+  public long getWriteBehind() {
+    return Math.max(0, writeBehindTicks);
+  }
+
+  /**
+   * write-behind を設定します
+   * <p>
+   * 有効な場合 {@link #saveFile()} はすぐには書き込まず、同じファイルへの書き込みは
+   * intervalTicks に最大1回にまとめられます サーバー停止時には必ず書き込まれます
+   *
+   * @param intervalTicks 書き込み間隔 (tick) 0以下で無効
+   */
+  public void setWriteBehind(long intervalTicks) {
+    this.writeBehindTicks = intervalTicks;
+    if (intervalTicks <= 0 && isDirty()) {
+      flush();
+    }
+  }
+
+  /**
+   * 非同期保存のI/Oスレッドを停止し、まだ書き込まれていない保存が終わるまで待ちます
+   * <p>
+   * {@link github.rainbowmori.rainbowapi.RainbowAPI#onDisable()} から呼ばれます
+   */
+  public static void shutdownExecutor() {
+    IO_EXECUTOR.shutdown();
+    try {
+      if (!IO_EXECUTOR.awaitTermination(30, TimeUnit.SECONDS)) {
+        IO_EXECUTOR.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      IO_EXECUTOR.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * データをファイルに書き込む処理
+   */
+  @FunctionalInterface
+  public interface DataWriter {
+
+    /**
+     * データを書き込みます (outputはcloseしないでください)
+     *
+     * @param output 書き込み先
+     * @throws IOException 書き込みに失敗した場合
+     */
+    void write(OutputStream output) throws IOException;
+
+    /**
+     * 書き込んだ内容でファイルが置き換えられた後に呼ばれます
+     *
+     * @throws IOException 後処理に失敗した場合
+     */
+    default void committed() throws IOException {
+    }
+  }
+
+  /**
+   * ファイルからデータを読み込む処理
+   *
+   * @param <T> 読み込んだデータ
+   */
+  @FunctionalInterface
+  public interface DataReader<T> {
+
+    /**
+     * データを読み込みます (inputはcloseしないでください)
+     *
+     * @param input 読み込み元
+     * @return 読み込んだデータ (空の場合はnull)
+     * @throws IOException 読み込みに失敗した場合
+     */
+    @Nullable T read(InputStream input) throws IOException;
+  }
+
+  private static final class IOThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(@NotNull Runnable runnable) {
+      Thread thread = new Thread(runnable, "RainbowAPI-FileIO-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
 }
@@ -0,0 +1,89 @@
+package github.rainbowmori.rainbowapi.api;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * write-behind が有効な {@link FileAPI} の変更をまとめて書き込むクラス
+ *
+ * @see FileAPI#setWriteBehind(long)
+ */
+public final class FileFlusher {
+
+  // 保存されていない変更がある FileAPI
+  private static final Set<FileAPI<?>> dirtyFiles = ConcurrentHashMap.newKeySet();
+
+  private static BukkitTask task;
+  private static long currentTick;
+
+  private FileFlusher() {
+  }
+
+  /**
+   * 毎tick変更のあるファイルを確認するタスクを開始します
+   * <p>
+   * {@link github.rainbowmori.rainbowapi.RainbowAPI#onEnable()} から呼ばれます
+   *
+   * @param plugin タスクを登録するプラグイン
+   */
+  public static void start(Plugin plugin) {
+    if (task == null) {
+      task = Bukkit.getScheduler().runTaskTimer(plugin, FileFlusher::tick, 1L, 1L);
+    }
+  }
+
+  /**
+   * タスクを停止し、変更のあるすべてのファイルを書き込み終わるまで待ちます
+   * <p>
+   * {@link github.rainbowmori.rainbowapi.RainbowAPI#onDisable()} から呼ばれます
+   */
+  public static void stop() {
+    if (task != null) {
+      task.cancel();
+      task = null;
+    }
+    flushAll().join();
+  }
+
+  /**
+   * 変更のあるすべてのファイルをすぐに書き込みます
+   *
+   * @return すべての書き込みが完了したら完了する {@link CompletableFuture}
+   */
+  public static CompletableFuture<Void> flushAll() {
+    List<CompletableFuture<Void>> futures = new ArrayList<>();
+    for (FileAPI<?> fileAPI : new ArrayList<>(dirtyFiles)) {
+      futures.add(fileAPI.flush().exceptionally(t -> null));
+    }
+    return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new));
+  }
+
+  static void register(FileAPI<?> fileAPI) {
+    dirtyFiles.add(fileAPI);
+  }
+
+  static void unregister(FileAPI<?> fileAPI) {
+    dirtyFiles.remove(fileAPI);
+  }
+
+  private static void tick() {
+    currentTick++;
+    Iterator<FileAPI<?>> iterator = dirtyFiles.iterator();
+    while (iterator.hasNext()) {
+      FileAPI<?> fileAPI = iterator.next();
+      if (currentTick - fileAPI.lastFlushTick < Math.max(1, fileAPI.getWriteBehind())) {
+        continue;
+      }
+      fileAPI.lastFlushTick = currentTick;
+      // flush() の中で dirtyFiles から削除してから dirty を解除する
+      fileAPI.flush();
+    }
+  }
+}
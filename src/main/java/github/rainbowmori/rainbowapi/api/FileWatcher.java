@@ -0,0 +1,168 @@
+package github.rainbowmori.rainbowapi.api;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link FileAPI#watch(java.util.function.Consumer)} されたファイルの外部からの変更を監視します
+ * <p>
+ * すべてのファイルで1つの {@link WatchService} とスレッドを共有し、続けて届いた変更は {@link #DEBOUNCE_MILLIS} ミリ秒まとめてから読み込みます
+ */
+public final class FileWatcher {
+
+  /**
+   * 最後の変更からファイルを読み込むまでの時間 (ミリ秒)
+   */
+  public static final long DEBOUNCE_MILLIS = 500;
+
+  private static final Object lock = new Object();
+  // フォルダー -> ファイル -> 監視しているFileAPI
+  private static final Map<Path, Map<Path, Set<FileAPI<?>>>> watching = new HashMap<>();
+  private static final Map<Path, WatchKey> keys = new HashMap<>();
+  private static WatchService service;
+  private static Thread thread;
+
+  private FileWatcher() {
+  }
+
+  static void register(FileAPI<?> file) {
+    Path path = file.file.toPath().toAbsolutePath();
+    Path directory = path.getParent();
+    synchronized (lock) {
+      try {
+        if (service == null) {
+          service = FileSystems.getDefault().newWatchService();
+          thread = new Thread(FileWatcher::run, "RainbowAPI-FileWatcher");
+          thread.setDaemon(true);
+          thread.start();
+        }
+        if (!keys.containsKey(directory)) {
+          keys.put(directory, directory.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+              StandardWatchEventKinds.ENTRY_MODIFY));
+        }
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      watching.computeIfAbsent(directory, k -> new HashMap<>())
+          .computeIfAbsent(path, k -> new HashSet<>()).add(file);
+    }
+  }
+
+  static void unregister(FileAPI<?> file) {
+    Path path = file.file.toPath().toAbsolutePath();
+    Path directory = path.getParent();
+    synchronized (lock) {
+      Map<Path, Set<FileAPI<?>>> files = watching.get(directory);
+      if (files == null) {
+        return;
+      }
+      Set<FileAPI<?>> apis = files.get(path);
+      if (apis != null && apis.remove(file) && apis.isEmpty()) {
+        files.remove(path);
+      }
+      if (files.isEmpty()) {
+        watching.remove(directory);
+        WatchKey key = keys.remove(directory);
+        if (key != null) {
+          key.cancel();
+        }
+      }
+    }
+  }
+
+  /**
+   * 監視を停止します
+   * <p>
+   * {@link github.rainbowmori.rainbowapi.RainbowAPI#onDisable()} から呼ばれます
+   */
+  public static void stop() {
+    synchronized (lock) {
+      if (service == null) {
+        return;
+      }
+      try {
+        service.close();
+      } catch (IOException ignored) {
+      }
+      thread.interrupt();
+      service = null;
+      thread = null;
+      keys.clear();
+      watching.clear();
+    }
+  }
+
+  private static void run() {
+    WatchService watchService;
+    synchronized (lock) {
+      watchService = service;
+    }
+    // 変更されたファイルと読み込む時刻
+    Map<Path, Long> pending = new HashMap<>();
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        WatchKey key = pending.isEmpty() ? watchService.take()
+            : watchService.poll(nextDelay(pending), TimeUnit.MILLISECONDS);
+        if (key != null) {
+          Path directory = (Path) key.watchable();
+          for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+              continue;
+            }
+            Path changed = directory.resolve((Path) event.context());
+            pending.put(changed, System.currentTimeMillis() + DEBOUNCE_MILLIS);
+          }
+          key.reset();
+        }
+        reloadDue(pending);
+      }
+    } catch (InterruptedException | ClosedWatchServiceException ignored) {
+      // stop() で停止した
+    }
+  }
+
+  private static long nextDelay(Map<Path, Long> pending) {
+    long now = System.currentTimeMillis();
+    long next = Long.MAX_VALUE;
+    for (long due : pending.values()) {
+      next = Math.min(next, due);
+    }
+    return Math.max(1, next - now);
+  }
+
+  private static void reloadDue(Map<Path, Long> pending) {
+    long now = System.currentTimeMillis();
+    Iterator<Map.Entry<Path, Long>> iterator = pending.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<Path, Long> entry = iterator.next();
+      if (entry.getValue() > now) {
+        continue;
+      }
+      iterator.remove();
+      Set<FileAPI<?>> apis;
+      synchronized (lock) {
+        Map<Path, Set<FileAPI<?>>> files = watching.get(entry.getKey().getParent());
+        apis = files == null ? null : files.get(entry.getKey());
+        if (apis != null) {
+          apis = Set.copyOf(apis);
+        }
+      }
+      if (apis != null) {
+        apis.forEach(FileAPI::reloadChanged);
+      }
+    }
+  }
+
+}
@@ -1,17 +1,19 @@
 package github.rainbowmori.rainbowapi.api;
 
+import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import com.google.gson.stream.JsonReader;
+import github.rainbowmori.rainbowapi.RMPlugin;
 import github.rainbowmori.rainbowapi.RainbowAPI;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import org.bukkit.plugin.Plugin;
-import org.codehaus.plexus.util.FileUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -45,8 +47,25 @@ public class JsonAPI extends FileAPI<JsonObject> {
     super(plugin, name, path);
   }
 
+  /**
+   * 引数のプラグインのフォルダーの path name のファイルを compression で圧縮して読み書きします
+   * <p>
+   * 例 [compression=GZIP] -> TEST/first/second/fileName.json.gz
+   *
+   * @param plugin      読み込みたいフォルダーのプラグイン
+   * @param name        読み込むファイルの名前
+   * @param path        ファイル階層
+   * @param compression 圧縮形式
+   */
+  public JsonAPI(Plugin plugin, String name, String path, Compression compression) {
+    super(plugin, name, path, compression);
+  }
+
   /**
    * obj を jsonElementに変換
+   * <p>
+   * {@link RainbowAPI#gson} で変換するため、プラグインで登録したアダプターは使われません
+   * ファイルのデータに入れる値は {@link #toElement(Object)} で変換してください
    *
    * @param obj 対象
    * @return 変換後
@@ -56,6 +75,37 @@ public class JsonAPI extends FileAPI<JsonObject> {
         : RainbowAPI.gson.toJsonTree(obj);
   }
 
+  /**
+   * obj を {@link #getGson()} で jsonElementに変換 (プラグインで登録したアダプターが使われます)
+   *
+   * @param obj 対象
+   * @return 変換後
+   */
+  public JsonElement toElement(Object obj) {
+    return obj instanceof JsonElement ? ((JsonElement) obj) : getGson().toJsonTree(obj);
+  }
+
+  /**
+   * このファイルのデータの key に value を設定します
+   *
+   * @param key   一番上のキー
+   * @param value 値 ({@link #toElement(Object)} で変換します)
+   */
+  public void set(String key, Object value) {
+    data.add(key, toElement(value));
+  }
+
+  /**
+   * このファイルのデータの path の通りにある {@link JsonObject} の key に value を設定します
+   *
+   * @param path  ["data",1,] など (ない場合は作成します)
+   * @param key   キー
+   * @param value 値 ({@link #toElement(Object)} で変換します)
+   */
+  public void set(List<Object> path, String key, Object value) {
+    getCreateJsonObject(path).add(key, toElement(value));
+  }
+
   /**
    * jsonからpathの通りにして{@link JsonObject} を取得します
    *
@@ -111,6 +161,47 @@ public class JsonAPI extends FileAPI<JsonObject> {
     return value;
   }
 
+  /**
+   * このファイルのデータからpathの通りにして{@link JsonObject} を取得します
+   *
+   * @param path ["data",1,] など
+   * @return pathの通りにあった場合はその値を返しますがない場合はnullを返します
+   * @see #getJsonObject(List, boolean)
+   */
+  public @Nullable JsonObject getExistJsonObject(List<Object> path) {
+    return getJsonObject(path, false);
+  }
+
+  /**
+   * このファイルのデータからpathの通りにして{@link JsonObject} を取得します
+   *
+   * @param path ["data",1,] など
+   * @return pathの通りにあった場合はその値を返しますがない場合はpathを作成して空のJsonObjectを返します
+   * @see #getJsonObject(List, boolean)
+   */
+  public @NotNull JsonObject getCreateJsonObject(List<Object> path) {
+    return Objects.requireNonNull(getJsonObject(path, true));
+  }
+
+  /**
+   * このファイルのデータからpathの通りにして{@link JsonObject} を取得します
+   *
+   * @param path      ["data",1,] など
+   * @param creatable pathがない場合に空のJsonObjectを追加するか
+   * @return pathの通りにある値を返します
+   * @see #getJsonObject(JsonObject, List, boolean)
+   */
+  public JsonObject getJsonObject(List<Object> path, boolean creatable) {
+    return getJsonObject(data, path, creatable);
+  }
+
+  /**
+   * @return プラグインが {@link RMPlugin} の場合は {@link RMPlugin#getGson()} そうでなければ {@link RainbowAPI#gson}
+   */
+  public Gson getGson() {
+    return plugin instanceof RMPlugin ? ((RMPlugin) plugin).getGson() : RainbowAPI.gson;
+  }
+
   /**
    * @return ファイルの拡張子
    */
@@ -124,32 +215,55 @@ public class JsonAPI extends FileAPI<JsonObject> {
    */
   @Override
   public void loadData() {
-    try {
-      FileReader fileReader = new FileReader(file);
-      if (FileUtils.fileRead(file).trim().isEmpty()) {
-        RainbowAPI.gson.toJson("{}", new FileWriter(file));
-      } else {
-        data = RainbowAPI.gson.fromJson(new JsonReader(fileReader),
-            JsonObject.class);
+    data = Objects.requireNonNullElseGet(readFile(createReader()), JsonObject::new);
+  }
+
+  /**
+   * @return {@link #getGson()} でファイルを読み込む {@link DataReader}
+   */
+  @Override
+  protected DataReader<JsonObject> createReader() {
+    Gson gson = getGson();
+    return input -> gson.fromJson(new InputStreamReader(input, StandardCharsets.UTF_8),
+        JsonObject.class);
+  }
+
+  /**
+   * @param oldData 読み込み直す前のデータ
+   * @param newData 読み込み直した後のデータ
+   * @return 値が変更された第一階層のキー
+   */
+  @Override
+  protected Set<String> diffKeys(JsonObject oldData, JsonObject newData) {
+    Set<String> changed = new HashSet<>();
+    for (String key : oldData.keySet()) {
+      if (!Objects.equals(oldData.get(key), newData.get(key))) {
+        changed.add(key);
       }
-    } catch (IOException ignored) {
-    } finally {
-      if (data == null) {
-        data = new JsonObject();
+    }
+    for (String key : newData.keySet()) {
+      if (!oldData.has(key)) {
+        changed.add(key);
       }
     }
+    return changed;
   }
 
   /**
-   * データをファイルに保存
+   * {@link #getSavaData()} を書き込む {@link DataWriter} を作成します
+   *
+   * @param snapshot 別スレッドで書き込むためにデータのコピーを取るか
+   * @return データを書き込む {@link DataWriter}
    */
   @Override
-  public void saveFile() {
-    try (Writer writer = new FileWriter(file)) {
-      RainbowAPI.gson.toJson(getSavaData(), writer);
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
+  protected DataWriter createWriter(boolean snapshot) {
+    JsonElement saveData = snapshot ? getSavaData().deepCopy() : getSavaData();
+    Gson gson = getGson();
+    return output -> {
+      Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+      gson.toJson(saveData, writer);
+      writer.flush();
+    };
   }
 
   /**
@@ -160,18 +274,4 @@ public class JsonAPI extends FileAPI<JsonObject> {
   public JsonElement getSavaData() {
     return data;
   }
-
-  /**
-   * ファイルの作成
-   */
-  @SuppressWarnings("ResultOfMethodCallIgnored")
-  @Override
-  public void createFile() {
-    try {
-      file.createNewFile();
-      RainbowAPI.gson.toJson("{}", new FileWriter(file));
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
-  }
 }
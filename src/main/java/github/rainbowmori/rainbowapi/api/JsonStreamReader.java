@@ -0,0 +1,168 @@
+package github.rainbowmori.rainbowapi.api;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * .json ファイルを {@link JsonReader} で先頭から順に読み込むクラス
+ * <p>
+ * {@link JsonAPI} と違いファイル全体を読み込まないため、大きなファイルでも1エントリ分のメモリしか使用しません
+ * <pre>{@code
+ * try (JsonStreamReader reader = JsonStreamReader.open(file, List.of("players"))) {
+ *   while (reader.hasNext()) {
+ *     Map.Entry<String, JsonElement> entry = reader.next();
+ *   }
+ * }
+ * }</pre>
+ */
+public class JsonStreamReader implements Closeable, Iterator<Map.Entry<String, JsonElement>> {
+
+  private final JsonReader reader;
+  // pathの通りのJsonObjectが見つかったか
+  private final boolean found;
+
+  /**
+   * sourceからpathの通りにあるJsonObjectのエントリを読み込みます
+   *
+   * @param source 読み込み元
+   * @param path   ["data",1,] など (空の場合は一番上のエントリ)
+   * @throws IOException 読み込みに失敗した場合
+   * @see JsonAPI#getJsonObject(com.google.gson.JsonObject, List, boolean)
+   */
+  public JsonStreamReader(Reader source, List<Object> path) throws IOException {
+    this.reader = new JsonReader(source);
+    this.found = moveTo(path);
+  }
+
+  /**
+   * fileからpathの通りにあるJsonObjectのエントリを読み込みます
+   *
+   * @param file 読み込むファイル
+   * @param path ["data",1,] など (空の場合は一番上のエントリ)
+   * @return {@link JsonStreamReader}
+   * @throws IOException 読み込みに失敗した場合
+   */
+  public static JsonStreamReader open(File file, List<Object> path) throws IOException {
+    return new JsonStreamReader(new InputStreamReader(
+        new BufferedInputStream(Files.newInputStream(file.toPath())), StandardCharsets.UTF_8),
+        path);
+  }
+
+  private boolean moveTo(List<Object> path) throws IOException {
+    try {
+      if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+        return false;
+      }
+    } catch (EOFException e) {
+      // 空のファイル
+      return false;
+    }
+    reader.beginObject();
+    for (Object o : path) {
+      String key = o.toString();
+      boolean matched = false;
+      while (reader.hasNext()) {
+        if (reader.nextName().equals(key) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+          reader.beginObject();
+          matched = true;
+          break;
+        }
+        reader.skipValue();
+      }
+      if (!matched) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return pathの通りのJsonObjectがファイルにあったか
+   */
+  public boolean isFound() {
+    return found;
+  }
+
+  /**
+   * @return まだ読み込んでいないエントリがあるか
+   */
+  @Override
+  public boolean hasNext() {
+    try {
+      return found && reader.hasNext();
+    } catch (IOException e) {
+      throw new JsonIOException(e);
+    }
+  }
+
+  /**
+   * 次のエントリのキーと値を読み込みます
+   *
+   * @return 次のエントリ
+   */
+  @Override
+  public Map.Entry<String, JsonElement> next() {
+    String key = nextKey();
+    return Map.entry(key, nextValue());
+  }
+
+  /**
+   * 次のエントリのキーを読み込みます
+   * <p>
+   * この後に {@link #nextValue()} か {@link #skipValue()} を呼んでください
+   *
+   * @return 次のエントリのキー
+   */
+  public @NotNull String nextKey() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    try {
+      return reader.nextName();
+    } catch (IOException e) {
+      throw new JsonIOException(e);
+    }
+  }
+
+  /**
+   * {@link #nextKey()} で読み込んだキーの値を読み込みます
+   *
+   * @return キーの値
+   */
+  public @NotNull JsonElement nextValue() {
+    return JsonParser.parseReader(reader);
+  }
+
+  /**
+   * {@link #nextKey()} で読み込んだキーの値を読み込まずに飛ばします
+   */
+  public void skipValue() {
+    try {
+      reader.skipValue();
+    } catch (IOException e) {
+      throw new JsonIOException(e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+}
@@ -0,0 +1,249 @@
+package github.rainbowmori.rainbowapi.api;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import github.rainbowmori.rainbowapi.RainbowAPI;
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * .json ファイルをすべて読み込まずに、pathの通りにあるJsonObjectのエントリを追加・置き換え・削除するクラス
+ * <p>
+ * 元のファイルをトークンごとに一時ファイルへコピーしながら変更を加えるため、大きなファイルでも変更する値の分のメモリしか使用しません
+ * <pre>{@code
+ * new JsonStreamWriter(List.of("players"))
+ *     .put(uuid.toString(), playerData)
+ *     .remove(oldUuid.toString())
+ *     .writeTo(file);
+ * }</pre>
+ */
+public class JsonStreamWriter {
+
+  private final List<Object> path;
+  private final Gson gson;
+  private final Map<String, JsonElement> replacements = new LinkedHashMap<>();
+  private final Set<String> removals = new HashSet<>();
+
+  /**
+   * @param path 変更するJsonObjectのpath ["data",1,] など (空の場合は一番上)
+   * @see JsonAPI#getJsonObject(com.google.gson.JsonObject, List, boolean)
+   */
+  public JsonStreamWriter(List<Object> path) {
+    this(path, RainbowAPI.gson);
+  }
+
+  /**
+   * @param path 変更するJsonObjectのpath ["data",1,] など (空の場合は一番上)
+   * @param gson 値の変換と書き込みに使う {@link Gson} ({@link JsonAPI#getGson()} など)
+   */
+  public JsonStreamWriter(List<Object> path, Gson gson) {
+    this.path = new ArrayList<>(path);
+    this.gson = gson;
+  }
+
+  /**
+   * keyの値を置き換えます ない場合はJsonObjectの最後に追加します
+   *
+   * @param key   キー
+   * @param value 値 (JsonElement 以外はコンストラクタの {@link Gson} で変換します)
+   * @return this
+   */
+  public JsonStreamWriter put(String key, Object value) {
+    removals.remove(key);
+    replacements.put(key, value instanceof JsonElement ? (JsonElement) value : gson.toJsonTree(value));
+    return this;
+  }
+
+  /**
+   * keyのエントリを削除します
+   *
+   * @param key キー
+   * @return this
+   */
+  public JsonStreamWriter remove(String key) {
+    replacements.remove(key);
+    removals.add(key);
+    return this;
+  }
+
+  /**
+   * fileに変更を書き込みます
+   *
+   * @param file 変更するファイル (ない場合は作成します)
+   * @throws IOException 書き込みに失敗した場合
+   * @see FileAPI#writeAtomically(File, FileAPI.DataWriter, boolean, boolean)
+   */
+  public void writeTo(File file) throws IOException {
+    FileAPI.writeAtomically(file, output -> {
+      Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+      if (file.exists()) {
+        try (Reader reader = new InputStreamReader(
+            new BufferedInputStream(Files.newInputStream(file.toPath())),
+            StandardCharsets.UTF_8)) {
+          transfer(reader, writer);
+        }
+      } else {
+        transfer(null, writer);
+      }
+      writer.flush();
+    }, false, false);
+  }
+
+  /**
+   * sourceの内容に変更を加えてtargetに書き込みます
+   *
+   * @param source 元のJson (nullの場合は空のJsonObject)
+   * @param target 書き込み先
+   * @throws IOException 読み込みか書き込みに失敗した場合
+   */
+  public void transfer(@Nullable Reader source, Writer target) throws IOException {
+    JsonWriter out = new JsonWriter(target);
+    JsonReader in = source == null ? null : new JsonReader(source);
+    if (in == null || isEmpty(in)) {
+      writeCreated(out, 0);
+    } else if (in.peek() != JsonToken.BEGIN_OBJECT) {
+      throw new JsonSyntaxException("Expected a JSON object but was " + in.peek());
+    } else {
+      copyObject(in, out, 0);
+    }
+    out.flush();
+  }
+
+  private static boolean isEmpty(JsonReader in) throws IOException {
+    try {
+      in.peek();
+      return false;
+    } catch (EOFException e) {
+      return true;
+    }
+  }
+
+  // depth はpathの何番目のJsonObjectの中にいるか (path.size() の場合は変更する対象)
+  private void copyObject(JsonReader in, JsonWriter out, int depth) throws IOException {
+    in.beginObject();
+    out.beginObject();
+    boolean target = depth == path.size();
+    String nextKey = target ? null : path.get(depth).toString();
+    boolean descended = false;
+    Set<String> written = new HashSet<>();
+    while (in.hasNext()) {
+      String name = in.nextName();
+      if (target) {
+        if (removals.contains(name)) {
+          in.skipValue();
+          continue;
+        }
+        JsonElement replacement = replacements.get(name);
+        if (replacement != null) {
+          in.skipValue();
+          out.name(name);
+          gson.toJson(replacement, out);
+          written.add(name);
+          continue;
+        }
+        out.name(name);
+        copyValue(in, out);
+      } else if (!descended && name.equals(nextKey)) {
+        descended = true;
+        out.name(name);
+        if (in.peek() == JsonToken.BEGIN_OBJECT) {
+          copyObject(in, out, depth + 1);
+        } else {
+          // JsonObjectではない値は getCreateJsonObject と同じように置き換える
+          in.skipValue();
+          writeCreated(out, depth + 1);
+        }
+      } else {
+        out.name(name);
+        copyValue(in, out);
+      }
+    }
+    if (target) {
+      for (Map.Entry<String, JsonElement> entry : replacements.entrySet()) {
+        if (!written.contains(entry.getKey())) {
+          out.name(entry.getKey());
+          gson.toJson(entry.getValue(), out);
+        }
+      }
+    } else if (!descended) {
+      out.name(nextKey);
+      writeCreated(out, depth + 1);
+    }
+    in.endObject();
+    out.endObject();
+  }
+
+  // 元のファイルにないpathを作成して追加するエントリを書き込む
+  private void writeCreated(JsonWriter out, int depth) throws IOException {
+    out.beginObject();
+    if (depth < path.size()) {
+      out.name(path.get(depth).toString());
+      writeCreated(out, depth + 1);
+    } else {
+      for (Map.Entry<String, JsonElement> entry : replacements.entrySet()) {
+        out.name(entry.getKey());
+        gson.toJson(entry.getValue(), out);
+      }
+    }
+    out.endObject();
+  }
+
+  private static void copyValue(JsonReader in, JsonWriter out) throws IOException {
+    switch (in.peek()) {
+      case BEGIN_ARRAY:
+        in.beginArray();
+        out.beginArray();
+        while (in.hasNext()) {
+          copyValue(in, out);
+        }
+        in.endArray();
+        out.endArray();
+        break;
+      case BEGIN_OBJECT:
+        in.beginObject();
+        out.beginObject();
+        while (in.hasNext()) {
+          out.name(in.nextName());
+          copyValue(in, out);
+        }
+        in.endObject();
+        out.endObject();
+        break;
+      case STRING:
+        out.value(in.nextString());
+        break;
+      case NUMBER:
+        // 数値は元の表記のまま書き込む
+        out.jsonValue(in.nextString());
+        break;
+      case BOOLEAN:
+        out.value(in.nextBoolean());
+        break;
+      case NULL:
+        in.nextNull();
+        out.nullValue();
+        break;
+      default:
+        throw new JsonSyntaxException("Unexpected token " + in.peek());
+    }
+  }
+}
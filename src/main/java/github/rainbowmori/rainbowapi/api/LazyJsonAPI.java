@@ -0,0 +1,560 @@
+package github.rainbowmori.rainbowapi.api;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 一番上のキーごとに必要になったときだけ読み込む {@link JsonAPI}
+ * <p>
+ * 読み込み時はファイルを1回走査して、一番上のキーごとに値のファイル上の位置を記録するだけです
+ * 値は {@link #get(String)} や {@link #getJsonObject(List, boolean)} で初めて使用されたときに読み込まれ、
+ * 保存時は使用されていないキーの値をファイルからそのままコピーします
+ * <p>
+ * ファイルは UTF-8 で読み書きします {@link #getData()} はすべてのキーを読み込むため、できるだけ使用しないでください
+ * 使用しなくなったら {@link #close()} を呼んでください
+ */
+public class LazyJsonAPI extends JsonAPI {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  // FileAPIのコンストラクタから loadData() が呼ばれるため、フィールドは初期化しない
+  private volatile Index index;
+  // 保存中の書き込みが使用している可能性があるため、1世代前の Index は次の置き換えまで閉じない
+  private Index previousIndex;
+  // 読み込んだか、追加・削除されたキー
+  private Set<String> touched;
+
+  /**
+   * 引数のプラグインのフォルダーの第一階層からnameのファイルを読み込みます
+   *
+   * @param plugin 読み込みたいフォルダーのプラグイン
+   * @param name   読み込むファイルの名前
+   */
+  public LazyJsonAPI(Plugin plugin, String name) {
+    super(plugin, name);
+  }
+
+  /**
+   * 引数のプラグインのフォルダーの path name のファイルを読み込みます
+   *
+   * @param plugin 読み込みたいフォルダーのプラグイン
+   * @param name   読み込むファイルの名前
+   * @param path   ファイル階層
+   */
+  public LazyJsonAPI(Plugin plugin, String name, String path) {
+    super(plugin, name, path);
+  }
+
+  /**
+   * ファイルを走査してキーごとの位置を記録します (値は読み込みません)
+   */
+  @Override
+  public void loadData() {
+    Index loaded;
+    setLoadError(null);
+    try {
+      loaded = Index.scan(file);
+    } catch (IOException | RuntimeException e) {
+      if (!backupFile.exists()) {
+        message.logError("Failed to load file: " + paths + " (" + e.getMessage() + ")");
+        setLoadError(e);
+        loaded = Index.EMPTY;
+      } else {
+        message.logWarn(paths + " の読み込みに失敗したため " + backupFile.getName() + " から読み込みます");
+        try {
+          loaded = Index.scan(backupFile);
+        } catch (IOException | RuntimeException backupException) {
+          message.logError("Failed to load file: " + paths + " (" + e.getMessage() + ")");
+          e.addSuppressed(backupException);
+          setLoadError(e);
+          loaded = Index.EMPTY;
+        }
+      }
+    }
+    data = new JsonObject();
+    touched = new HashSet<>();
+    replaceIndex(loaded);
+  }
+
+  /**
+   * ファイル全体を読み込まないように、変更の読み込みも {@link #loadData()} で行います
+   *
+   * @return null
+   */
+  @Override
+  protected DataReader<JsonObject> createReader() {
+    return null;
+  }
+
+  /**
+   * keyの値を取得します (まだ読み込んでいない場合はファイルから読み込みます)
+   *
+   * @param key 一番上のキー
+   * @return keyの値 (ない場合はnull)
+   */
+  public @Nullable JsonElement get(String key) {
+    load(key);
+    return data.get(key);
+  }
+
+  /**
+   * keyの値を設定します
+   *
+   * @param key   一番上のキー
+   * @param value 値 ({@link #toElement(Object)} で変換します)
+   */
+  @Override
+  public void set(String key, Object value) {
+    touched.add(key);
+    data.add(key, toElement(value));
+  }
+
+  /**
+   * keyを削除します
+   *
+   * @param key 一番上のキー
+   * @return 削除したか
+   */
+  public boolean remove(String key) {
+    boolean exists = has(key);
+    touched.add(key);
+    data.remove(key);
+    return exists;
+  }
+
+  /**
+   * @param key 一番上のキー
+   * @return keyがあるか (値は読み込みません)
+   */
+  public boolean has(String key) {
+    return data.has(key) || (!touched.contains(key) && index.ranges.containsKey(key));
+  }
+
+  /**
+   * @return 一番上のすべてのキー (値は読み込みません)
+   */
+  public Set<String> keys() {
+    Set<String> keys = new LinkedHashSet<>();
+    for (String key : index.ranges.keySet()) {
+      if (!touched.contains(key)) {
+        keys.add(key);
+      }
+    }
+    keys.addAll(data.keySet());
+    return keys;
+  }
+
+  /**
+   * pathの最初のキーだけを読み込んでから {@link JsonObject} を取得します
+   *
+   * @param path      ["data",1,] など
+   * @param creatable pathがない場合に空のJsonObjectを追加するか
+   * @return pathの通りにある値を返します
+   */
+  @Override
+  public JsonObject getJsonObject(List<Object> path, boolean creatable) {
+    if (path.isEmpty()) {
+      loadAll();
+    } else {
+      load(path.get(0).toString());
+    }
+    return getJsonObject(data, path, creatable);
+  }
+
+  /**
+   * すべてのキーを読み込んでからデータを返します
+   *
+   * @return data
+   */
+  @Override
+  public JsonObject getData() {
+    loadAll();
+    return data;
+  }
+
+  /**
+   * すべてのキーを読み込んでからデータを返します
+   *
+   * @return セーブするJsonElement
+   */
+  @Override
+  public JsonElement getSavaData() {
+    return getData();
+  }
+
+  /**
+   * 開いているファイルを閉じます
+   */
+  public synchronized void close() {
+    if (previousIndex != null) {
+      previousIndex.close();
+      previousIndex = null;
+    }
+    index.close();
+    index = Index.EMPTY;
+  }
+
+  private void loadAll() {
+    for (String key : index.ranges.keySet()) {
+      load(key);
+    }
+  }
+
+  private void load(String key) {
+    if (touched.contains(key)) {
+      return;
+    }
+    // 読み込み中に保存が完了して古いファイルが閉じられた場合は新しい Index で読み直す
+    for (int attempt = 0; ; attempt++) {
+      Index current = index;
+      Range range = current.ranges.get(key);
+      if (range == null) {
+        return;
+      }
+      try {
+        data.add(key, current.parse(range));
+        touched.add(key);
+        return;
+      } catch (ClosedChannelException e) {
+        if (attempt > 0) {
+          throw new RuntimeException(e);
+        }
+      } catch (IOException e) {
+        message.logError("Failed to load " + key + " in " + paths);
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+  private synchronized void replaceIndex(Index next) {
+    Index old = previousIndex;
+    previousIndex = index;
+    index = next;
+    if (old != null) {
+      old.close();
+    }
+  }
+
+  /**
+   * 使用されたキーだけをシリアライズし、それ以外はファイルからコピーする {@link DataWriter} を作成します
+   *
+   * @param snapshot 別スレッドで書き込むためにデータのコピーを取るか
+   * @return データを書き込む {@link DataWriter}
+   */
+  @Override
+  protected DataWriter createWriter(boolean snapshot) {
+    Index current = index;
+    Set<String> changedKeys = new HashSet<>(touched);
+    changedKeys.addAll(data.keySet());
+    Map<String, JsonElement> values = new LinkedHashMap<>();
+    for (Map.Entry<String, JsonElement> entry : data.entrySet()) {
+      values.put(entry.getKey(), snapshot ? entry.getValue().deepCopy() : entry.getValue());
+    }
+    return new IndexWriter(current, changedKeys, values);
+  }
+
+  private final class IndexWriter implements DataWriter {
+
+    private final Gson gson;
+    private final Index source;
+    private final Set<String> changedKeys;
+    private final Map<String, JsonElement> values;
+    private final Map<String, Range> written = new LinkedHashMap<>();
+
+    private IndexWriter(Index source, Set<String> changedKeys, Map<String, JsonElement> values) {
+      this.gson = getGson();
+      this.source = source;
+      this.changedKeys = changedKeys;
+      this.values = values;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+      written.clear();
+      long position = 0;
+      output.write('{');
+      position++;
+      boolean first = true;
+      for (Map.Entry<String, Range> entry : source.ranges.entrySet()) {
+        String key = entry.getKey();
+        byte[] value;
+        if (changedKeys.contains(key)) {
+          JsonElement element = values.get(key);
+          if (element == null) {
+            continue;
+          }
+          value = gson.toJson(element).getBytes(StandardCharsets.UTF_8);
+        } else {
+          value = source.read(entry.getValue());
+        }
+        position = writeEntry(output, position, first, key, value);
+        first = false;
+      }
+      for (Map.Entry<String, JsonElement> entry : values.entrySet()) {
+        if (!source.ranges.containsKey(entry.getKey())) {
+          byte[] value = gson.toJson(entry.getValue()).getBytes(StandardCharsets.UTF_8);
+          position = writeEntry(output, position, first, entry.getKey(), value);
+          first = false;
+        }
+      }
+      output.write('}');
+    }
+
+    private long writeEntry(OutputStream output, long position, boolean first, String key,
+        byte[] value) throws IOException {
+      if (!first) {
+        output.write(',');
+        position++;
+      }
+      byte[] name = gson.toJson(key).getBytes(StandardCharsets.UTF_8);
+      output.write(name);
+      output.write(':');
+      position += name.length + 1;
+      output.write(value);
+      written.put(key, new Range(position, position + value.length));
+      return position + value.length;
+    }
+
+    @Override
+    public void committed() throws IOException {
+      replaceIndex(new Index(written.isEmpty() ? Map.of() : new LinkedHashMap<>(written),
+          FileChannel.open(file.toPath(), StandardOpenOption.READ)));
+    }
+  }
+
+  /**
+   * ファイル上の値の位置 [start, end)
+   */
+  private record Range(long start, long end) {
+
+  }
+
+  /**
+   * キーごとの値の位置と、その位置が指すファイル
+   */
+  private static final class Index {
+
+    private static final Index EMPTY = new Index(Map.of(), null);
+
+    private final Map<String, Range> ranges;
+    private final @Nullable FileChannel channel;
+
+    private Index(Map<String, Range> ranges, @Nullable FileChannel channel) {
+      this.ranges = ranges;
+      this.channel = channel;
+    }
+
+    private static Index scan(File source) throws IOException {
+      if (!source.exists()) {
+        return EMPTY;
+      }
+      FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+      try {
+        Map<String, Range> ranges = new Scanner(channel).scan();
+        return ranges.isEmpty() ? new Index(Map.of(), channel) : new Index(ranges, channel);
+      } catch (IOException | RuntimeException e) {
+        channel.close();
+        throw e;
+      }
+    }
+
+    private byte[] read(Range range) throws IOException {
+      if (channel == null) {
+        throw new ClosedChannelException();
+      }
+      ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(range.end() - range.start()));
+      long position = range.start();
+      while (buffer.hasRemaining()) {
+        int read = channel.read(buffer, position);
+        if (read < 0) {
+          throw new IOException("Unexpected end of file");
+        }
+        position += read;
+      }
+      return buffer.array();
+    }
+
+    private JsonElement parse(Range range) throws IOException {
+      return JsonParser.parseReader(new InputStreamReader(
+          new ByteArrayInputStream(read(range)), StandardCharsets.UTF_8));
+    }
+
+    private void close() {
+      if (channel != null) {
+        try {
+          channel.close();
+        } catch (IOException ignored) {
+        }
+      }
+    }
+  }
+
+  /**
+   * 一番上のJsonObjectのキーと値の位置だけを読み取る簡易的なスキャナー
+   */
+  private static final class Scanner {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    // buffer の先頭のファイル上の位置
+    private long bufferStart = 0;
+
+    private Scanner(FileChannel channel) {
+      this.channel = channel;
+      buffer.limit(0);
+    }
+
+    private Map<String, Range> scan() throws IOException {
+      Map<String, Range> ranges = new LinkedHashMap<>();
+      int c = nextToken();
+      if (c == -1) {
+        // 空のファイル
+        return ranges;
+      }
+      expect(c, '{');
+      c = nextToken();
+      if (c == '}') {
+        return ranges;
+      }
+      while (true) {
+        expect(c, '"');
+        String key = readKey();
+        expect(nextToken(), ':');
+        c = nextToken();
+        long start = position() - 1;
+        long end;
+        if (c == '{' || c == '[') {
+          skipContainer();
+          end = position();
+          c = nextToken();
+        } else if (c == '"') {
+          skipString(null);
+          end = position();
+          c = nextToken();
+        } else {
+          // 数値や true false null
+          while (c != -1 && c != ',' && c != '}' && !isWhitespace(c)) {
+            c = read();
+          }
+          end = c == -1 ? position() : position() - 1;
+          if (isWhitespace(c)) {
+            c = nextToken();
+          }
+        }
+        ranges.put(key, new Range(start, end));
+        if (c == '}') {
+          return ranges;
+        }
+        expect(c, ',');
+        c = nextToken();
+      }
+    }
+
+    private String readKey() throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      boolean escaped = skipString(bytes);
+      String raw = bytes.toString(StandardCharsets.UTF_8);
+      return escaped ? JsonParser.parseString('"' + raw + '"').getAsString() : raw;
+    }
+
+    // 開始の " の後から終わりの " まで読み進める (エスケープを含むかを返す)
+    private boolean skipString(@Nullable ByteArrayOutputStream bytes) throws IOException {
+      boolean escaped = false;
+      while (true) {
+        int c = read();
+        if (c == -1) {
+          throw new JsonSyntaxException("Unterminated string");
+        }
+        if (c == '"') {
+          return escaped;
+        }
+        if (bytes != null) {
+          bytes.write(c);
+        }
+        if (c == '\\') {
+          escaped = true;
+          int next = read();
+          if (bytes != null && next != -1) {
+            bytes.write(next);
+          }
+        }
+      }
+    }
+
+    // 開始の { か [ の後から対応する } か ] まで読み進める
+    private void skipContainer() throws IOException {
+      int depth = 1;
+      while (depth > 0) {
+        int c = read();
+        if (c == -1) {
+          throw new JsonSyntaxException("Unexpected end of file");
+        }
+        if (c == '"') {
+          skipString(null);
+        } else if (c == '{' || c == '[') {
+          depth++;
+        } else if (c == '}' || c == ']') {
+          depth--;
+        }
+      }
+    }
+
+    private int nextToken() throws IOException {
+      int c;
+      do {
+        c = read();
+      } while (isWhitespace(c));
+      return c;
+    }
+
+    private static boolean isWhitespace(int c) {
+      return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private static void expect(int actual, char expected) {
+      if (actual != expected) {
+        throw new JsonSyntaxException("Expected '" + expected + "' but was "
+            + (actual == -1 ? "end of file" : "'" + (char) actual + "'"));
+      }
+    }
+
+    private long position() {
+      return bufferStart + buffer.position();
+    }
+
+    private int read() throws IOException {
+      if (!buffer.hasRemaining()) {
+        bufferStart += buffer.limit();
+        buffer.clear();
+        int read = channel.read(buffer, bufferStart);
+        buffer.flip();
+        if (read < 0) {
+          return -1;
+        }
+      }
+      return buffer.get() & 0xFF;
+    }
+  }
+}
@@ -0,0 +1,316 @@
+package github.rainbowmori.rainbowapi.api;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.IllegalPluginAccessException;
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * プレイヤーごとに1つのファイルを持つデータストア
+ * <p>
+ * ファイルは {@link AsyncPlayerPreLoginEvent} で非同期に読み込まれ、オンラインの間はメモリに残ります
+ * ログアウトしたプレイヤーのファイルは件数を制限したキャッシュに移り、追い出されるときに保存されます
+ * 追い出されたファイルのデータのコピーはメインスレッドで取るため、他のスレッドで {@link #get(UUID)} しても
+ * メインスレッドで変更中のデータをコピーすることはありません
+ * ファイルは path/UUIDの先頭2文字/UUID.json のように分けて保存されます
+ * <pre>
+ * PlayerDataAPI&lt;JsonAPI&gt; players = PlayerDataAPI.json(plugin, "players");
+ * players.get(player.getUniqueId()).getData();
+ * // onDisable
+ * players.close();
+ * </pre>
+ *
+ * @param <F> プレイヤーのデータを読み込む {@link FileAPI}
+ */
+public class PlayerDataAPI<F extends FileAPI<?>> implements Listener {
+
+  /**
+   * デフォルトのログアウトしたプレイヤーのファイルを残しておく数
+   */
+  public static final int DEFAULT_CACHE_SIZE = 256;
+
+  private final Plugin plugin;
+  private final String path;
+  private final BiFunction<String, String, F> factory;
+  private final int cacheSize;
+  // オンラインのプレイヤー
+  private final Map<UUID, F> online = new ConcurrentHashMap<>();
+  // ログアウトしたプレイヤー (使われた順、追い出されたら保存する)
+  // 追い出すときと読み込むときに同じプレイヤーを見逃さないように、online と saving の変更もこのロックで行う
+  private final LinkedHashMap<UUID, F> offline = new LinkedHashMap<>(16, 0.75F, true);
+  // 追い出されて保存中のプレイヤーの書き込み (完了するまで同じプレイヤーを読み込まない)
+  private final Map<UUID, Eviction> saving = new ConcurrentHashMap<>();
+
+  /**
+   * {@link JsonAPI} でプレイヤーのデータを読み込む {@link PlayerDataAPI} を作成します
+   *
+   * @param plugin 読み込みたいフォルダーのプラグイン
+   * @param path   ファイル階層
+   * @return {@link PlayerDataAPI}
+   */
+  public static PlayerDataAPI<JsonAPI> json(Plugin plugin, String path) {
+    return new PlayerDataAPI<>(plugin, path, (name, shard) -> new JsonAPI(plugin, name, shard),
+        DEFAULT_CACHE_SIZE);
+  }
+
+  /**
+   * 作成すると同時にイベントを登録し、すでにオンラインのプレイヤーのファイルを読み込みます
+   *
+   * @param plugin    読み込みたいフォルダーのプラグイン
+   * @param path      ファイル階層
+   * @param factory   (UUID, ファイル階層) から {@link FileAPI} を作成する処理
+   * @param cacheSize ログアウトしたプレイヤーのファイルを残しておく数
+   */
+  public PlayerDataAPI(Plugin plugin, String path, BiFunction<String, String, F> factory,
+      int cacheSize) {
+    this.plugin = plugin;
+    this.path = path;
+    this.factory = factory;
+    this.cacheSize = cacheSize;
+    Bukkit.getPluginManager().registerEvents(this, plugin);
+    for (Player player : Bukkit.getOnlinePlayers()) {
+      acquire(player.getUniqueId());
+    }
+  }
+
+  /**
+   * プレイヤーのファイルを取得します
+   * <p>
+   * オンラインでもキャッシュにもない場合は、呼び出したスレッドで読み込んでキャッシュに入れます
+   *
+   * @param uuid プレイヤーのUUID
+   * @return プレイヤーのファイル
+   */
+  public @NotNull F get(@NotNull UUID uuid) {
+    F file = getIfLoaded(uuid);
+    if (file != null) {
+      return file;
+    }
+    return cache(uuid, load(uuid));
+  }
+
+  /**
+   * @param uuid プレイヤーのUUID
+   * @return 読み込まれているプレイヤーのファイル (ない場合はnull)
+   */
+  public @Nullable F getIfLoaded(@NotNull UUID uuid) {
+    F file = online.get(uuid);
+    if (file != null) {
+      return file;
+    }
+    synchronized (offline) {
+      return offline.get(uuid);
+    }
+  }
+
+  /**
+   * @return オンラインのプレイヤーのファイル
+   */
+  public Map<UUID, F> getOnline() {
+    return Map.copyOf(online);
+  }
+
+  /**
+   * 読み込まれているすべてのファイルを {@link FileAPI#saveFileAsync()} で保存します
+   *
+   * @return すべての保存が完了したら完了する {@link CompletableFuture}
+   */
+  public CompletableFuture<Void> saveAll() {
+    List<CompletableFuture<Void>> futures = new ArrayList<>();
+    online.values().forEach(file -> futures.add(file.saveFileAsync()));
+    synchronized (offline) {
+      offline.values().forEach(file -> futures.add(file.saveFileAsync()));
+    }
+    for (Eviction eviction : saving.values()) {
+      if (Bukkit.isPrimaryThread()) {
+        // メインスレッドで待つと、予約した保存が始まらない
+        eviction.save();
+      }
+      futures.add(eviction.done);
+    }
+    return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new));
+  }
+
+  /**
+   * イベントの登録を解除し、すべてのファイルを保存してメモリから取り除きます
+   * <p>
+   * プラグインの onDisable で呼んでください
+   */
+  public void close() {
+    HandlerList.unregisterAll(this);
+    saveAll().join();
+    online.clear();
+    synchronized (offline) {
+      offline.clear();
+    }
+  }
+
+  /**
+   * @param uuid プレイヤーのUUID
+   * @return ファイル階層 (path/UUIDの先頭2文字)
+   */
+  public String getShardPath(UUID uuid) {
+    return path + File.separator + uuid.toString().substring(0, 2);
+  }
+
+  private F load(UUID uuid) {
+    Eviction eviction = saving.get(uuid);
+    if (eviction != null) {
+      if (Bukkit.isPrimaryThread()) {
+        // メインスレッドで待つと、予約した保存が始まらない
+        eviction.save();
+      }
+      // 追い出したときの書き込みが終わる前に読み込むと、古い内容を読み込んでしまう
+      eviction.done.exceptionally(t -> null).join();
+    }
+    return factory.apply(uuid.toString(), getShardPath(uuid));
+  }
+
+  private void acquire(UUID uuid) {
+    F file;
+    synchronized (offline) {
+      if (online.containsKey(uuid)) {
+        return;
+      }
+      file = offline.remove(uuid);
+    }
+    // 読み込み中に他のプレイヤーの処理を止めないように、ロックを離してから読み込む
+    online.putIfAbsent(uuid, file != null ? file : load(uuid));
+  }
+
+  private void release(UUID uuid) {
+    F file;
+    synchronized (offline) {
+      file = online.remove(uuid);
+      if (file == null) {
+        return;
+      }
+      offline.put(uuid, file);
+    }
+    file.saveFileAsync();
+    evict();
+  }
+
+  // 読み込んだファイルをキャッシュに入れる (他のスレッドが先に読み込んでいた場合はそちらを返す)
+  private F cache(UUID uuid, F file) {
+    synchronized (offline) {
+      F loaded = online.get(uuid);
+      if (loaded == null) {
+        loaded = offline.putIfAbsent(uuid, file);
+      }
+      if (loaded != null) {
+        return loaded;
+      }
+    }
+    evict();
+    return file;
+  }
+
+  // 件数を超えた古いファイルを追い出して保存する
+  private void evict() {
+    List<Eviction> evicted = new ArrayList<>();
+    synchronized (offline) {
+      Iterator<Map.Entry<UUID, F>> iterator = offline.entrySet().iterator();
+      while (offline.size() > cacheSize) {
+        Map.Entry<UUID, F> entry = iterator.next();
+        iterator.remove();
+        // キャッシュから取り除くのと同時に登録し、読み込むときに保存を待てるようにする
+        Eviction eviction = new Eviction(entry.getKey(), entry.getValue());
+        saving.put(entry.getKey(), eviction);
+        evicted.add(eviction);
+      }
+    }
+    for (Eviction eviction : evicted) {
+      if (Bukkit.isPrimaryThread()) {
+        eviction.save();
+        continue;
+      }
+      try {
+        // データのコピーはメインスレッドで取る
+        Bukkit.getScheduler().runTask(plugin, eviction::save);
+      } catch (IllegalPluginAccessException e) {
+        // プラグインが無効になった後は、このスレッドで保存する
+        eviction.save();
+      }
+    }
+  }
+
+  @EventHandler(priority = EventPriority.MONITOR)
+  public void preLogin(AsyncPlayerPreLoginEvent e) {
+    if (e.getLoginResult() == AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+      acquire(e.getUniqueId());
+    }
+  }
+
+  @EventHandler(priority = EventPriority.MONITOR)
+  public void login(PlayerLoginEvent e) {
+    if (e.getResult() != PlayerLoginEvent.Result.ALLOWED) {
+      release(e.getPlayer().getUniqueId());
+    }
+  }
+
+  @EventHandler(priority = EventPriority.MONITOR)
+  public void quit(PlayerQuitEvent e) {
+    release(e.getPlayer().getUniqueId());
+  }
+
+  @Override
+  public String toString() {
+    return "PlayerDataAPI [" + plugin.getName() + File.separator + path + "]";
+  }
+
+  // 追い出されたファイルの保存 (save は一度だけ行われる)
+  private final class Eviction {
+
+    private final UUID uuid;
+    private final F file;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+    Eviction(UUID uuid, F file) {
+      this.uuid = uuid;
+      this.file = file;
+    }
+
+    void save() {
+      if (!started.compareAndSet(false, true)) {
+        return;
+      }
+      CompletableFuture<Void> save;
+      try {
+        save = file.saveFileAsync();
+      } catch (RuntimeException e) {
+        save = CompletableFuture.failedFuture(e);
+      }
+      save.whenComplete((result, t) -> {
+        saving.remove(uuid, this);
+        if (t != null) {
+          done.completeExceptionally(t);
+        } else {
+          done.complete(null);
+        }
+      });
+    }
+  }
+
+}
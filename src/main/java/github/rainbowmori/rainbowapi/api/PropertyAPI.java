@@ -1,11 +1,12 @@
 package github.rainbowmori.rainbowapi.api;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import org.bukkit.plugin.Plugin;
 
 /**
@@ -13,6 +14,16 @@ import org.bukkit.plugin.Plugin;
  */
 public class PropertyAPI extends FileAPI<Properties> {
 
+  // 変更ごとに異なる値を割り当てるためのカウンター
+  private static final AtomicLong MODIFICATIONS = new AtomicLong();
+  // 最後に data を変更したときの値 (snapshot が古くなったかの判定に使う)
+  // loadData はスーパークラスのコンストラクタから呼ばれるため初期値を書かない
+  private volatile long modified;
+  // data の変更できないコピー (古くなった場合は次に使われるときに作り直す)
+  private volatile Snapshot snapshot;
+  // getProperty を snapshot から読むか
+  private volatile boolean snapshotReads;
+
   /**
    * 引数のプラグインのフォルダーの第一階層からnameのファイルを読み込みます
    *
@@ -48,37 +59,76 @@ public class PropertyAPI extends FileAPI<Properties> {
    */
   @Override
   public void loadData() {
-    try (InputStream input = new FileInputStream(file)) {
+    replaceData(Objects.requireNonNullElseGet(readFile(createReader()), Properties::new));
+  }
+
+  /**
+   * {@link #data} を置き換え、{@link #getSnapshot()} を古くなったものとします
+   *
+   * @param newData 読み込み直したデータ
+   */
+  @Override
+  protected void replaceData(Properties newData) {
+    this.data = newData;
+    updateSnapshot();
+  }
+
+  /**
+   * @return ファイルを {@link Properties} として読み込む {@link DataReader}
+   */
+  @Override
+  protected DataReader<Properties> createReader() {
+    return input -> {
       Properties prop = new Properties();
       prop.load(input);
-      this.data = prop;
-    } catch (IOException e) {
-      message.logError("Failed to load property file: " + paths);
-      throw new RuntimeException(e);
-    }
+      return prop;
+    };
   }
 
   /**
-   * データをファイルに保存
+   * @param oldData 読み込み直す前のデータ
+   * @param newData 読み込み直した後のデータ
+   * @return 値が変更されたキー
    */
   @Override
-  public void saveFile() {
-    try (OutputStream output = new FileOutputStream(file)) {
-      this.data.store(output, "Properties file for " + plugin.getName());
-    } catch (IOException e) {
-      message.logError("Failed to save property file: " + paths);
-      throw new RuntimeException(e);
+  protected Set<String> diffKeys(Properties oldData, Properties newData) {
+    Set<String> changed = new HashSet<>();
+    for (String key : oldData.stringPropertyNames()) {
+      if (!Objects.equals(oldData.getProperty(key), newData.getProperty(key))) {
+        changed.add(key);
+      }
     }
+    for (String key : newData.stringPropertyNames()) {
+      if (oldData.getProperty(key) == null) {
+        changed.add(key);
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * {@link #data} を書き込む {@link DataWriter} を作成します
+   *
+   * @param snapshot 別スレッドで書き込むためにデータのコピーを取るか
+   * @return データを書き込む {@link DataWriter}
+   */
+  @Override
+  protected DataWriter createWriter(boolean snapshot) {
+    Properties properties = snapshot ? (Properties) this.data.clone() : this.data;
+    String comments = "Properties file for " + plugin.getName();
+    return output -> properties.store(output, comments);
   }
 
   /**
    * プロパティファイルから値を取得する
+   * <p>
+   * {@link #setSnapshotReads(boolean)} が有効な場合は {@link #getSnapshot()} から取得します
    *
    * @param key キー
    * @return プロパティ値
    */
   public String getProperty(String key) {
-    return this.data.getProperty(key);
+    return snapshotReads ? getSnapshot().get(key) : this.data.getProperty(key);
   }
 
   /**
@@ -89,7 +139,78 @@ public class PropertyAPI extends FileAPI<Properties> {
    */
   public void setProperty(String key, String value) {
     this.data.setProperty(key, value);
+    updateSnapshot();
+    saveFile();
+  }
+
+  /**
+   * プロパティファイルに複数の値をまとめて設定し、1回だけ保存する
+   *
+   * @param properties キーとプロパティ値
+   */
+  public void setProperties(Map<String, String> properties) {
+    this.data.putAll(properties);
+    updateSnapshot();
     saveFile();
   }
 
+  /**
+   * @return {@link #getProperty(String)} が {@link #getSnapshot()} から読むか
+   */
+  public boolean isSnapshotReads() {
+    return snapshotReads;
+  }
+
+  /**
+   * {@link #getProperty(String)} を {@link #getSnapshot()} から読むようにします (デフォルトは無効)
+   * <p>
+   * 有効な場合、読み込みはロックを取りませんが、{@link #getData()} を直接変更したときは
+   * {@link #updateSnapshot()} を呼ぶまで古い値が返ります
+   *
+   * @param snapshotReads {@link #getSnapshot()} から読むか
+   */
+  public void setSnapshotReads(boolean snapshotReads) {
+    this.snapshotReads = snapshotReads;
+  }
+
+  /**
+   * ロックを取らずにどのスレッドからでも読める、プロパティの変更できないコピーを返します
+   * <p>
+   * コピーは変更のあとに最初に呼ばれたときに作り直すため、続けて変更しても毎回すべてのプロパティをコピーすることはありません
+   *
+   * @return プロパティのキーと値
+   */
+  public Map<String, String> getSnapshot() {
+    Snapshot current = snapshot;
+    long version = modified;
+    if (current == null || current.version != version) {
+      Map<String, String> map = new HashMap<>();
+      for (String key : data.stringPropertyNames()) {
+        map.put(key, data.getProperty(key));
+      }
+      current = new Snapshot(Map.copyOf(map), version);
+      snapshot = current;
+    }
+    return current.properties;
+  }
+
+  /**
+   * {@link #getData()} を直接変更した場合に {@link #getSnapshot()} を古くなったものとします
+   */
+  public void updateSnapshot() {
+    modified = MODIFICATIONS.incrementAndGet();
+  }
+
+  // 作成したときの modified と一緒に持つ data のコピー
+  private static final class Snapshot {
+
+    private final Map<String, String> properties;
+    private final long version;
+
+    private Snapshot(Map<String, String> properties, long version) {
+      this.properties = properties;
+      this.version = version;
+    }
+  }
+
 }
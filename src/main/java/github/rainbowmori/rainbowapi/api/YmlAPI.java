@@ -1,6 +1,12 @@
 package github.rainbowmori.rainbowapi.api;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.Plugin;
@@ -32,6 +38,20 @@ public class YmlAPI extends FileAPI<FileConfiguration> {
     super(plugin, name, path);
   }
 
+  /**
+   * 引数のプラグインのフォルダーの path name のファイルを compression で圧縮して読み書きします
+   * <p>
+   * 例 [compression=GZIP] -> TEST/first/second/fileName.yml.gz
+   *
+   * @param plugin      読み込みたいフォルダーのプラグイン
+   * @param name        読み込むファイルの名前
+   * @param path        ファイル階層
+   * @param compression 圧縮形式
+   */
+  public YmlAPI(Plugin plugin, String name, String path, Compression compression) {
+    super(plugin, name, path, compression);
+  }
+
   /**
    * @return ファイルの拡張子
    */
@@ -45,19 +65,71 @@ public class YmlAPI extends FileAPI<FileConfiguration> {
    */
   @Override
   public void loadData() {
-    data = YamlConfiguration.loadConfiguration(file);
+    data = Objects.requireNonNullElseGet(readFile(createReader()), YamlConfiguration::new);
   }
 
   /**
-   * データをファイルに保存
+   * @return ファイルを {@link YamlConfiguration} として読み込む {@link DataReader}
    */
   @Override
-  public void saveFile() {
-    try {
-      data.save(file);
-    } catch (IOException e) {
-      throw new RuntimeException(e);
+  protected DataReader<FileConfiguration> createReader() {
+    return input -> {
+      YamlConfiguration configuration = new YamlConfiguration();
+      try {
+        configuration.load(new InputStreamReader(input, StandardCharsets.UTF_8));
+      } catch (InvalidConfigurationException e) {
+        throw new IOException(e);
+      }
+      return configuration;
+    };
+  }
+
+  /**
+   * @param oldData 読み込み直す前のデータ
+   * @param newData 読み込み直した後のデータ
+   * @return 値が変更されたキー ("a.b.c" の形式)
+   */
+  @Override
+  protected Set<String> diffKeys(FileConfiguration oldData, FileConfiguration newData) {
+    Set<String> changed = new HashSet<>();
+    for (String key : oldData.getKeys(true)) {
+      if (!oldData.isConfigurationSection(key)
+          && !Objects.equals(oldData.get(key), newData.get(key))) {
+        changed.add(key);
+      }
+    }
+    for (String key : newData.getKeys(true)) {
+      if (!newData.isConfigurationSection(key) && !oldData.contains(key)) {
+        changed.add(key);
+      }
     }
+    return changed;
+  }
+
+  /**
+   * {@link #data} を書き込む {@link DataWriter} を作成します
+   * <p>
+   * {@link FileConfiguration} は安全にコピーできないため、snapshotに関わらず呼び出したスレッドで文字列に変換します
+   *
+   * @param snapshot 別スレッドで書き込むためにデータのコピーを取るか
+   * @return データを書き込む {@link DataWriter}
+   */
+  @Override
+  protected DataWriter createWriter(boolean snapshot) {
+    byte[] yaml = data.saveToString().getBytes(StandardCharsets.UTF_8);
+    return output -> output.write(yaml);
+  }
+
+  /**
+   * このファイルの内容を type に読み込む {@link ConfigView} を作成します
+   *
+   * @param type レコードまたはインターフェース
+   * @param <R>  読み込む型
+   * @return {@link ConfigView}
+   * @see ConfigView
+   */
+  public <R> ConfigView<R> bind(Class<R> type) {
+    return new ConfigView<>(this, type);
   }
 
 }
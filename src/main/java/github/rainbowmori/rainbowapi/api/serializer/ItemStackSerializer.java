@@ -1,27 +1,90 @@
 package github.rainbowmori.rainbowapi.api.serializer;
 
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonParseException;
-import com.google.gson.JsonPrimitive;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
-import java.lang.reflect.Type;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
 import java.util.Base64;
 import org.bukkit.inventory.ItemStack;
 
-public class ItemStackSerializer implements JsonSerializer<ItemStack>, JsonDeserializer<ItemStack> {
+/**
+ * {@link ItemStack} を {@link ItemStack#serializeAsBytes()} のBase64の文字列として読み書きします
+ */
+public class ItemStackSerializer extends TypeAdapter<ItemStack> {
+
+  /**
+   * デフォルトのキャッシュする {@link ItemStack} の数
+   */
+  public static final long DEFAULT_CACHE_SIZE = 1024;
+
+  // Base64の文字列からデコードした ItemStack (外には clone だけを渡すため変更されない)
+  private final Cache<String, ItemStack> cache;
+
+  public ItemStackSerializer() {
+    this(DEFAULT_CACHE_SIZE);
+  }
+
+  /**
+   * @param cacheSize キャッシュする {@link ItemStack} の数 (0でキャッシュしない)
+   */
+  public ItemStackSerializer(long cacheSize) {
+    this.cache = CacheBuilder.newBuilder().maximumSize(cacheSize).recordStats().build();
+  }
 
   @Override
-  public JsonElement serialize(ItemStack src, Type typeOfSrc, JsonSerializationContext context) {
-    return new JsonPrimitive(Base64.getEncoder().encodeToString(src.serializeAsBytes()));
+  public void write(JsonWriter out, ItemStack src) throws IOException {
+    if (src == null) {
+      out.nullValue();
+      return;
+    }
+    out.value(Base64.getEncoder().encodeToString(src.serializeAsBytes()));
   }
 
   @Override
-  public ItemStack deserialize(JsonElement jsonElement, Type type,
-      JsonDeserializationContext context) throws JsonParseException {
-    return ItemStack.deserializeBytes(Base64.getDecoder().decode(jsonElement.getAsString()));
+  public ItemStack read(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    String encoded = in.nextString();
+    ItemStack template = cache.getIfPresent(encoded);
+    if (template == null) {
+      template = ItemStack.deserializeBytes(Base64.getDecoder().decode(encoded));
+      cache.put(encoded, template);
+    }
+    return template.clone();
+  }
+
+  /**
+   * @return キャッシュのヒット数やミス数
+   */
+  public CacheStats getCacheStats() {
+    return cache.stats();
+  }
+
+  /**
+   * @return キャッシュのヒット数
+   */
+  public long getHitCount() {
+    return cache.stats().hitCount();
+  }
+
+  /**
+   * @return キャッシュのミス数
+   */
+  public long getMissCount() {
+    return cache.stats().missCount();
+  }
+
+  /**
+   * キャッシュを空にします
+   */
+  public void invalidateCache() {
+    cache.invalidateAll();
   }
 
 }
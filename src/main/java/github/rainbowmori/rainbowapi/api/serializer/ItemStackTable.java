@@ -0,0 +1,275 @@
+package github.rainbowmori.rainbowapi.api.serializer;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import github.rainbowmori.rainbowapi.api.FileAPI;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * {@link ItemStack} をNBTのバイト列のまま保存し、JSONからは番号で参照するためのテーブル
+ * <p>
+ * 同じ内容の {@link ItemStack} は1つのバイト列にまとめられ、{@link #get(int)} で初めて使われたときにデコードされます
+ * {@link #load(File)} はファイルをメモリマップするため、使われない {@link ItemStack} はメモリに読み込まれません
+ * 読み込んだファイルや前に保存したファイルに保存する場合は、ファイルを置き換えずに増えた分だけを追記します
+ * <pre>
+ * ItemStackTable table = ItemStackTable.load(file);
+ * Gson gson = RainbowAPI.gson.newBuilder().registerTypeAdapter(ItemStack.class, table.adapter()).create();
+ * ...
+ * table.save(file);
+ * </pre>
+ * ファイルは [magic:int][version:int][count:int] の後に [length:int][NBT] が count 個続きます
+ */
+public class ItemStackTable {
+
+  private static final int MAGIC = 0x524D4954;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 12;
+  private static final int COUNT_OFFSET = 8;
+
+  // NBTのバイト列 (読み込んだものはメモリマップの一部)
+  private final List<ByteBuffer> entries = new ArrayList<>();
+  // デコードした ItemStack (返すときはcloneする)
+  private final List<ItemStack> decoded = new ArrayList<>();
+  // 内容から番号を引くためのマップ (最初に add されたときに作る)
+  private Map<ByteBuffer, Integer> indexes;
+  // 最後に読み込んだか保存したファイルと、そのファイルにある件数と大きさ
+  private File source;
+  private int sourceCount;
+  private long sourceEnd;
+
+  /**
+   * 空のテーブルを作成します
+   */
+  public ItemStackTable() {
+  }
+
+  /**
+   * {@link #save(File)} で保存したファイルをメモリマップして読み込みます
+   * <p>
+   * ファイルが存在しない場合は空のテーブルを返します
+   *
+   * @param file 読み込むファイル
+   * @return 読み込んだテーブル
+   * @throws IOException 読み込みに失敗した場合
+   */
+  public static ItemStackTable load(File file) throws IOException {
+    ItemStackTable table = new ItemStackTable();
+    if (!file.exists() || file.length() == 0) {
+      return table;
+    }
+    ByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+      throw new IOException(file.getName() + " は ItemStackTable のファイルではありません");
+    }
+    int version = buffer.getInt();
+    if (version != VERSION) {
+      throw new IOException("対応していないバージョンです (" + version + ")");
+    }
+    int count = buffer.getInt();
+    for (int i = 0; i < count; i++) {
+      int length = buffer.getInt();
+      if (length < 0 || length > buffer.remaining()) {
+        throw new IOException(file.getName() + " が壊れています (" + i + "番目)");
+      }
+      table.entries.add(buffer.slice(buffer.position(), length));
+      table.decoded.add(null);
+      buffer.position(buffer.position() + length);
+    }
+    table.source = file.getAbsoluteFile();
+    table.sourceCount = count;
+    table.sourceEnd = buffer.position();
+    return table;
+  }
+
+  /**
+   * テーブルをファイルに保存します
+   * <p>
+   * 最後に読み込んだか保存したファイルに保存する場合は、メモリマップしているファイルを置き換えずに (Windowsでは置き換えられない)
+   * 増えた分を追記してから件数を書き換えます 途中で停止しても前の件数までは読み込めます
+   * それ以外のファイルには {@link FileAPI#writeAtomically(File, FileAPI.DataWriter, boolean, boolean)} で書き込みます
+   *
+   * @param file 保存するファイル
+   * @throws IOException 書き込みに失敗した場合
+   */
+  public void save(File file) throws IOException {
+    List<ByteBuffer> snapshot;
+    boolean append;
+    int saved;
+    long end;
+    synchronized (this) {
+      snapshot = new ArrayList<>(entries);
+      append = file.getAbsoluteFile().equals(source);
+      saved = sourceCount;
+      end = sourceEnd;
+    }
+    if (append && append(file, snapshot, saved, end)) {
+      end += length(snapshot, saved);
+    } else {
+      FileAPI.writeAtomically(file, output -> {
+        DataOutputStream data = new DataOutputStream(output);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(snapshot.size());
+        writeEntries(data, snapshot, 0);
+        data.flush();
+      }, false, false);
+      end = HEADER_SIZE + length(snapshot, 0);
+    }
+    synchronized (this) {
+      source = file.getAbsoluteFile();
+      sourceCount = snapshot.size();
+      sourceEnd = end;
+    }
+  }
+
+  // file の件数が saved のままの場合は end から追記して true を返す
+  private static boolean append(File file, List<ByteBuffer> snapshot, int saved, long end)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+        StandardOpenOption.WRITE)) {
+      ByteBuffer count = ByteBuffer.allocate(4);
+      if (channel.size() < end || channel.read(count, COUNT_OFFSET) != 4
+          || count.getInt(0) != saved) {
+        // 他から書き換えられている
+        return false;
+      }
+      if (snapshot.size() == saved) {
+        return true;
+      }
+      channel.position(end);
+      DataOutputStream data = new DataOutputStream(
+          new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+      writeEntries(data, snapshot, saved);
+      data.flush();
+      // 追記した内容がディスクに書き込まれてから件数を書き換える
+      channel.force(false);
+      count.clear().putInt(0, snapshot.size());
+      while (count.hasRemaining()) {
+        channel.write(count, COUNT_OFFSET + count.position());
+      }
+      channel.force(false);
+    }
+    return true;
+  }
+
+  private static void writeEntries(DataOutputStream data, List<ByteBuffer> snapshot, int from)
+      throws IOException {
+    byte[] buffer = new byte[8192];
+    for (int i = from; i < snapshot.size(); i++) {
+      ByteBuffer source = snapshot.get(i).duplicate();
+      data.writeInt(source.remaining());
+      while (source.hasRemaining()) {
+        int length = Math.min(buffer.length, source.remaining());
+        source.get(buffer, 0, length);
+        data.write(buffer, 0, length);
+      }
+    }
+  }
+
+  private static long length(List<ByteBuffer> snapshot, int from) {
+    long length = 0;
+    for (int i = from; i < snapshot.size(); i++) {
+      length += 4 + snapshot.get(i).remaining();
+    }
+    return length;
+  }
+
+  /**
+   * item をテーブルに追加します
+   * <p>
+   * 同じ内容の {@link ItemStack} がすでにある場合は、その番号を返します
+   *
+   * @param item 追加する {@link ItemStack}
+   * @return テーブルの番号
+   */
+  public synchronized int add(@NotNull ItemStack item) {
+    ByteBuffer bytes = ByteBuffer.wrap(item.serializeAsBytes());
+    if (indexes == null) {
+      indexes = new HashMap<>();
+      for (int i = 0; i < entries.size(); i++) {
+        indexes.putIfAbsent(entries.get(i), i);
+      }
+    }
+    Integer index = indexes.get(bytes);
+    if (index != null) {
+      return index;
+    }
+    int added = entries.size();
+    entries.add(bytes);
+    decoded.add(item.clone());
+    indexes.put(bytes, added);
+    return added;
+  }
+
+  /**
+   * テーブルの {@link ItemStack} を取得します
+   * <p>
+   * 初めて取得するときにデコードし、以降はその clone を返します
+   *
+   * @param index テーブルの番号
+   * @return {@link ItemStack} のコピー
+   * @throws IndexOutOfBoundsException 番号がテーブルにない場合
+   */
+  public synchronized @NotNull ItemStack get(int index) {
+    ItemStack item = decoded.get(index);
+    if (item == null) {
+      ByteBuffer entry = entries.get(index).duplicate();
+      byte[] bytes = new byte[entry.remaining()];
+      entry.get(bytes);
+      item = ItemStack.deserializeBytes(bytes);
+      decoded.set(index, item);
+    }
+    return item.clone();
+  }
+
+  /**
+   * @return テーブルの {@link ItemStack} の数
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * {@link ItemStack} をこのテーブルの番号として読み書きする {@link TypeAdapter} を返します
+   * <p>
+   * 書き込むときは {@link #add(ItemStack)} されるため、保存する前に {@link #save(File)} も呼んでください
+   *
+   * @return {@link TypeAdapter}
+   */
+  public TypeAdapter<ItemStack> adapter() {
+    return new TypeAdapter<ItemStack>() {
+      @Override
+      public void write(JsonWriter out, ItemStack value) throws IOException {
+        out.value(add(value));
+      }
+
+      @Override
+      public ItemStack read(JsonReader in) throws IOException {
+        int index = in.nextInt();
+        if (index < 0 || index >= size()) {
+          throw new JsonParseException("ItemStackTable に " + index + " 番の ItemStack がありません");
+        }
+        return get(index);
+      }
+    }.nullSafe();
+  }
+
+}
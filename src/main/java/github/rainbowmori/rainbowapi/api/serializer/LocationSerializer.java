@@ -1,32 +1,173 @@
 package github.rainbowmori.rainbowapi.api.serializer;
 
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
-import java.lang.reflect.Type;
-import org.bukkit.Bukkit;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import github.rainbowmori.rainbowapi.listener.WorldCache;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import org.bukkit.Location;
+import org.bukkit.World;
 
-public class LocationSerializer implements JsonSerializer<Location>, JsonDeserializer<Location> {
+/**
+ * {@link Location} を [world, x, y, z, yaw, pitch] の配列として読み書きします
+ * <p>
+ * world はワールドの名前ですが、ワールドの辞書を渡した場合は辞書の番号になります
+ * 以前の {"world": "...", "x": "...", ...} の形式も読み込めます
+ */
+public class LocationSerializer extends TypeAdapter<Location> {
+
+  // ワールドの辞書 (nullの場合は名前をそのまま書く)
+  private final List<String> worlds;
+  private final Map<String, Integer> indexes;
+
+  /**
+   * ワールドを名前で書き込みます
+   */
+  public LocationSerializer() {
+    this.worlds = null;
+    this.indexes = null;
+  }
+
+  /**
+   * ワールドを worlds の番号で書き込みます
+   * <p>
+   * 辞書にないワールドは末尾に追加されるため、書き込んだ後は {@link #getWorlds()} をファイルと一緒に保存してください
+   *
+   * @param worlds 保存されていたワールドの辞書
+   */
+  public LocationSerializer(List<String> worlds) {
+    this.worlds = new ArrayList<>(worlds);
+    this.indexes = new HashMap<>();
+    for (int i = 0; i < this.worlds.size(); i++) {
+      indexes.putIfAbsent(this.worlds.get(i), i);
+    }
+  }
+
+  /**
+   * @return ワールドの辞書 (名前で書き込む場合は空)
+   */
+  public synchronized List<String> getWorlds() {
+    return worlds == null ? Collections.emptyList() : List.copyOf(worlds);
+  }
 
   @Override
-  public JsonElement serialize(Location src, Type typeOfSrc, JsonSerializationContext context) {
-    JsonObject element = new JsonObject();
-    src.serialize().forEach((s, o) -> element.addProperty(s, o.toString()));
-    return element;
+  public void write(JsonWriter out, Location src) throws IOException {
+    if (src == null) {
+      out.nullValue();
+      return;
+    }
+    out.beginArray();
+    World world = src.isWorldLoaded() ? src.getWorld() : null;
+    if (world == null) {
+      out.nullValue();
+    } else if (worlds == null) {
+      out.value(world.getName());
+    } else {
+      out.value(indexOf(world.getName()));
+    }
+    out.value(src.getX());
+    out.value(src.getY());
+    out.value(src.getZ());
+    out.value(src.getYaw());
+    out.value(src.getPitch());
+    out.endArray();
   }
 
   @Override
-  public Location deserialize(JsonElement jsonElement, Type type,
-      JsonDeserializationContext context) throws JsonParseException {
-    JsonObject obj = jsonElement.getAsJsonObject();
-    return new Location(Bukkit.getWorld(obj.get("world").getAsString()),
-        obj.get("x").getAsDouble(), obj.get("y").getAsDouble(), obj.get("z").getAsDouble(),
-        obj.get("yaw").getAsFloat(), obj.get("pitch").getAsFloat());
+  public Location read(JsonReader in) throws IOException {
+    switch (in.peek()) {
+      case NULL:
+        in.nextNull();
+        return null;
+      case BEGIN_ARRAY:
+        in.beginArray();
+        World world = readWorld(in);
+        Location location = new Location(world, in.nextDouble(), in.nextDouble(),
+            in.nextDouble(), (float) in.nextDouble(), (float) in.nextDouble());
+        in.endArray();
+        return location;
+      case BEGIN_OBJECT:
+        return readObject(in);
+      default:
+        throw new JsonParseException("Location ではありません: " + in.peek() + " " + in.getPath());
+    }
+  }
+
+  private World readWorld(JsonReader in) throws IOException {
+    switch (in.peek()) {
+      case NULL:
+        in.nextNull();
+        return null;
+      case NUMBER:
+        int index = in.nextInt();
+        String name;
+        synchronized (this) {
+          if (worlds == null || index < 0 || index >= worlds.size()) {
+            throw new JsonParseException("ワールドの辞書に " + index + " 番がありません " + in.getPath());
+          }
+          name = worlds.get(index);
+        }
+        return WorldCache.getInstance().getWorld(name);
+      default:
+        return WorldCache.getInstance().getWorld(in.nextString());
+    }
+  }
+
+  // 以前の形式 (Location#serialize の値を文字列にしたもの)
+  private Location readObject(JsonReader in) throws IOException {
+    World world = null;
+    double x = 0, y = 0, z = 0;
+    float yaw = 0, pitch = 0;
+    in.beginObject();
+    while (in.hasNext()) {
+      String key = in.nextName();
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        continue;
+      }
+      switch (key) {
+        case "world":
+          world = WorldCache.getInstance().getWorld(in.nextString());
+          break;
+        case "x":
+          x = in.nextDouble();
+          break;
+        case "y":
+          y = in.nextDouble();
+          break;
+        case "z":
+          z = in.nextDouble();
+          break;
+        case "yaw":
+          yaw = (float) in.nextDouble();
+          break;
+        case "pitch":
+          pitch = (float) in.nextDouble();
+          break;
+        default:
+          in.skipValue();
+          break;
+      }
+    }
+    in.endObject();
+    return new Location(world, x, y, z, yaw, pitch);
+  }
+
+  private synchronized int indexOf(String name) {
+    Integer index = indexes.get(name);
+    if (index == null) {
+      index = worlds.size();
+      worlds.add(name);
+      indexes.put(name, index);
+    }
+    return index;
   }
 
 }
@@ -80,9 +80,7 @@ public class FastBoard extends FastBoardBase<Component> {
    * {@inheritDoc}
    */
   @Override
-  protected void sendLineChange(int score) throws Throwable {
-    Component line = getLineByScore(score);
-
+  protected void sendLineChange(int score, Component line) throws Throwable {
     sendTeamPacket(score, FastBoardBase.TeamMode.UPDATE, line, null);
   }
 
@@ -34,15 +34,23 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
+import java.util.logging.Level;
 import java.util.stream.Stream;
 
+import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.entity.Player;
 
@@ -50,6 +58,12 @@ import org.bukkit.entity.Player;
  * Lightweight packet-based scoreboard API for Bukkit plugins.
  * It can be safely used asynchronously as everything is at packet level.
  * <p>
+ * The title and lines are immutable snapshots, replaced atomically by the updates.
+ * The packets are sent by one thread at a time, by diffing the last sent snapshot
+ * with the published one, in the order of the updates and viewer changes: an update
+ * made while another thread is sending packets is sent by that thread, so the
+ * updates never wait for a lock.
+ * <p>
  * The project is on
  * <a href="https://github.com/MrMicky-FR/FastBoard">GitHub</a>.
  *
@@ -78,6 +92,8 @@ public abstract class FastBoardBase<T> {
     }
   }
 
+  // Max packets in one bundle (BundlerInfo.BUNDLE_SIZE_LIMIT)
+  private static final int BUNDLE_SIZE_LIMIT = 4096;
   private static final Map<Class<?>, Field[]> PACKETS = new HashMap<>(8);
   protected static final String[] COLOR_CODES = Arrays.stream(ChatColor.values())
       .map(Object::toString)
@@ -90,6 +106,13 @@ public abstract class FastBoardBase<T> {
   private static final MethodHandle PLAYER_CONNECTION;
   private static final MethodHandle SEND_PACKET;
   private static final MethodHandle PLAYER_GET_HANDLE;
+  // ClientboundBundlePacket(Iterable), null before 1.19.4
+  private static final MethodHandle PACKET_BUNDLE;
+  // Netty channel access for broadcast mode, null if not found
+  private static final MethodHandle PLAYER_NETWORK_MANAGER;
+  private static final MethodHandle NETWORK_MANAGER_CHANNEL;
+  private static final MethodHandle CHANNEL_IS_OPEN;
+  private static final MethodHandle CHANNEL_EVENT_LOOP;
   // Scoreboard packets
   private static final FastReflection.PacketConstructor PACKET_SB_OBJ;
   private static final FastReflection.PacketConstructor PACKET_SB_DISPLAY_OBJ;
@@ -154,6 +177,32 @@ public abstract class FastBoardBase<T> {
       PLAYER_GET_HANDLE = lookup.findVirtual(craftPlayerClass, "getHandle", MethodType.methodType(entityPlayerClass));
       PLAYER_CONNECTION = lookup.unreflectGetter(playerConnectionField);
       SEND_PACKET = lookup.unreflect(sendPacketMethod);
+      Optional<Class<?>> bundlePacketClass = FastReflection.nmsOptionalClass(gameProtocolPackage,
+          "ClientboundBundlePacket");
+      PACKET_BUNDLE = bundlePacketClass.isPresent()
+          ? lookup.findConstructor(bundlePacketClass.get(), MethodType.methodType(void.class, Iterable.class))
+          : null;
+
+      Optional<Class<?>> networkManagerClass = FastReflection.nmsOptionalClass("network", "NetworkManager");
+      Optional<Class<?>> channelClass = FastReflection.optionalClass("io.netty.channel.Channel");
+      Field networkManagerField = networkManagerClass.isPresent()
+          ? findField(playerConnectionClass, networkManagerClass.get())
+          : null;
+      Field channelField = networkManagerClass.isPresent() && channelClass.isPresent()
+          ? findField(networkManagerClass.get(), channelClass.get())
+          : null;
+      if (networkManagerField != null && channelField != null) {
+        PLAYER_NETWORK_MANAGER = lookup.unreflectGetter(networkManagerField);
+        NETWORK_MANAGER_CHANNEL = lookup.unreflectGetter(channelField);
+        CHANNEL_IS_OPEN = lookup.unreflect(channelClass.get().getMethod("isOpen"));
+        CHANNEL_EVENT_LOOP = lookup.unreflect(channelClass.get().getMethod("eventLoop"));
+      } else {
+        PLAYER_NETWORK_MANAGER = null;
+        NETWORK_MANAGER_CHANNEL = null;
+        CHANNEL_IS_OPEN = null;
+        CHANNEL_EVENT_LOOP = null;
+      }
+
       PACKET_SB_OBJ = FastReflection.findPacketConstructor(packetSbObjClass, lookup);
       PACKET_SB_DISPLAY_OBJ = FastReflection.findPacketConstructor(packetSbDisplayObjClass, lookup);
 
@@ -224,20 +273,48 @@ public abstract class FastBoardBase<T> {
     }
   }
 
-  private final Collection<Player> players;
+  private final CopyOnWriteArrayList<Player> players;
 
   private final String id;
 
-  private final List<T> lines = new ArrayList<>();
+  // Latest title and lines, published by the updates
+  private final AtomicReference<Snapshot<T>> snapshot;
+
+  // Title and lines the viewers have, only changed while draining
+  private volatile Snapshot<T> sent;
+
+  // Viewers who have other title and lines than sent (limitSendPacket), only used while draining
+  private final Map<Player, Snapshot<T>> viewerSent = new HashMap<>();
+
+  // State of the viewers receiving the current packets, only used while draining
+  private Snapshot<T> current;
+
+  // Players receiving the packets in limitSendPacket, only used while draining
+  private Collection<Player> limited;
+
+  // Viewer changes, published snapshots and other packets waiting to be sent, in order
+  private final Queue<PacketAction> actions = new ConcurrentLinkedQueue<>();
+
+  // Only one thread sends the packets of this board at a time
+  private final AtomicBoolean draining = new AtomicBoolean();
+
+  private volatile Thread drainer;
 
-  private T title = emptyLine();
+  // Packets of the current batch of each thread
+  private final ThreadLocal<List<Object>> batch = new ThreadLocal<>();
 
-  private boolean deleted = false;
+  // True while the thread is in batchUpdate
+  private final ThreadLocal<Boolean> deferred = new ThreadLocal<>();
 
-  private boolean showing = false;
+  // Set by delete() on the calling thread, so the board refuses updates right away
+  private final AtomicBoolean deleted = new AtomicBoolean();
 
-  private boolean isChoicePlayers = false;
-  private Collection<Player> choicePlayers;
+  // True once the scoreboard was removed from the viewers, no packet is sent after that
+  private volatile boolean removed = false;
+
+  private volatile boolean showing = false;
+
+  private volatile boolean broadcast = false;
 
   protected FastBoardBase(Player player) {
     this(Arrays.asList(player));
@@ -250,30 +327,50 @@ public abstract class FastBoardBase<T> {
    */
   protected FastBoardBase(Collection<Player> players) {
     if (players == null || players.isEmpty()) {
-      this.players = new ArrayList<>();
+      this.players = new CopyOnWriteArrayList<>();
     } else {
-      this.players = players.stream().collect(Collectors.toCollection(ArrayList::new));
+      this.players = new CopyOnWriteArrayList<>(players);
     }
     this.id = "fb-" + Integer.toHexString(ThreadLocalRandom.current().nextInt());
+    this.sent = new Snapshot<>(emptyLine(), Collections.emptyList(), 0);
+    this.snapshot = new AtomicReference<>(this.sent);
   }
 
+  /**
+   * Add a viewer, and send the whole scoreboard (objective and lines) to them if it
+   * is showing.
+   *
+   * @param player the new viewer
+   */
   final public void addViewer(Player player) {
-    this.players.add(player);
-    if (this.showing) {
-      limitSendPacket((board) -> board.show(), player);
-    }
+    queue(() -> {
+      if (this.players.addIfAbsent(player)) {
+        this.viewerSent.remove(player);
+        if (this.showing) {
+          batchViewers(Collections.singletonList(player), () -> sendFullState(player));
+        }
+      }
+    });
   }
 
   final public void removeViewer(Player player) {
-    this.players.remove(player);
-    if (this.showing) {
-      limitSendPacket((board) -> board.hide(), player);
-    }
+    queue(() -> {
+      if (this.players.remove(player)) {
+        if (this.showing) {
+          batchViewers(Collections.singletonList(player), this::sendHide);
+        }
+        this.viewerSent.remove(player);
+      }
+    });
   }
 
   final public void removeViewers() {
-    this.hide();
-    this.players.clear();
+    queue(() -> {
+      batchViewers(this.players, this::sendHide);
+      this.showing = false;
+      this.players.clear();
+      this.viewerSent.clear();
+    });
   }
 
   /**
@@ -282,7 +379,7 @@ public abstract class FastBoardBase<T> {
    * @return the scoreboard title
    */
   public T getTitle() {
-    return this.title;
+    return this.snapshot.get().title;
   }
 
   /**
@@ -294,17 +391,20 @@ public abstract class FastBoardBase<T> {
    * @throws IllegalStateException    if {@link #delete()} was call before
    */
   public void updateTitle(T title) {
-    if (this.title.equals(Objects.requireNonNull(title, "title"))) {
-      return;
-    }
-
-    this.title = title;
+    Objects.requireNonNull(title, "title");
+    checkNotDeleted();
+
+    Snapshot<T> current;
+    Snapshot<T> next;
+    do {
+      current = this.snapshot.get();
+      if (current.title.equals(title)) {
+        return;
+      }
+      next = current.withTitle(title);
+    } while (!this.snapshot.compareAndSet(current, next));
 
-    try {
-      sendObjectivePacket(ObjectiveMode.UPDATE);
-    } catch (Throwable t) {
-      throw new RuntimeException("Unable to update scoreboard title", t);
-    }
+    publish(next);
   }
 
   /**
@@ -313,7 +413,7 @@ public abstract class FastBoardBase<T> {
    * @return the scoreboard lines
    */
   public List<T> getLines() {
-    return new ArrayList<>(this.lines);
+    return new ArrayList<>(this.snapshot.get().lines);
   }
 
   /**
@@ -324,9 +424,10 @@ public abstract class FastBoardBase<T> {
    * @throws IndexOutOfBoundsException if the line is higher than {@code size}
    */
   public T getLine(int line) {
-    checkLineNumber(line, true, false);
+    List<T> lines = this.snapshot.get().lines;
+    checkLineNumber(line, lines.size(), true, false);
 
-    return this.lines.get(line);
+    return lines.get(line);
   }
 
   /**
@@ -337,31 +438,30 @@ public abstract class FastBoardBase<T> {
    * @throws IndexOutOfBoundsException if the line is higher than {@link #size()
    *                                   size() + 1}
    */
-  public synchronized void updateLine(int line, T text) {
-    checkLineNumber(line, false, true);
-
-    try {
-      if (line < size()) {
-        this.lines.set(line, text);
-
-        sendLineChange(getScoreByLine(line));
-        return;
-      }
-
-      List<T> newLines = new ArrayList<>(this.lines);
-
-      if (line > size()) {
-        for (int i = size(); i < line; i++) {
+  public void updateLine(int line, T text) {
+    checkLineNumber(line, 0, false, true);
+    checkNotDeleted();
+
+    Snapshot<T> current;
+    Snapshot<T> next;
+    List<T> newLines;
+    do {
+      current = this.snapshot.get();
+      newLines = new ArrayList<>(current.lines);
+
+      if (line < newLines.size()) {
+        newLines.set(line, text);
+      } else {
+        for (int i = newLines.size(); i < line; i++) {
           newLines.add(emptyLine());
         }
-      }
 
-      newLines.add(text);
+        newLines.add(text);
+      }
+      next = current.withLines(newLines);
+    } while (!this.snapshot.compareAndSet(current, next));
 
-      updateLines(newLines);
-    } catch (Throwable t) {
-      throw new RuntimeException("Unable to update scoreboard lines", t);
-    }
+    publish(next);
   }
 
   /**
@@ -369,16 +469,24 @@ public abstract class FastBoardBase<T> {
    *
    * @param line the line number
    */
-  public synchronized void removeLine(int line) {
-    checkLineNumber(line, false, false);
+  public void removeLine(int line) {
+    checkLineNumber(line, 0, false, false);
+    checkNotDeleted();
+
+    Snapshot<T> current;
+    Snapshot<T> next;
+    do {
+      current = this.snapshot.get();
+      if (line >= current.lines.size()) {
+        return;
+      }
 
-    if (line >= size()) {
-      return;
-    }
+      List<T> newLines = new ArrayList<>(current.lines);
+      newLines.remove(line);
+      next = current.withLines(newLines);
+    } while (!this.snapshot.compareAndSet(current, next));
 
-    List<T> newLines = new ArrayList<>(this.lines);
-    newLines.remove(line);
-    updateLines(newLines);
+    publish(next);
   }
 
   /**
@@ -401,52 +509,251 @@ public abstract class FastBoardBase<T> {
    *                                  or lower
    * @throws IllegalStateException    if {@link #delete()} was call before
    */
-  public synchronized void updateLines(Collection<T> lines) {
+  public void updateLines(Collection<T> lines) {
     Objects.requireNonNull(lines, "lines");
-    checkLineNumber(lines.size(), false, true);
-
-    List<T> oldLines = new ArrayList<>(this.lines);
-    this.lines.clear();
-    this.lines.addAll(lines);
+    checkLineNumber(lines.size(), 0, false, true);
+    checkNotDeleted();
+
+    List<T> newLines = new ArrayList<>(lines);
+    Snapshot<T> current;
+    Snapshot<T> next;
+    do {
+      current = this.snapshot.get();
+      next = current.withLines(newLines);
+    } while (!this.snapshot.compareAndSet(current, next));
+
+    publish(next);
+  }
 
-    int linesSize = this.lines.size();
+  /**
+   * Run several updates (title, lines...) and send all their packets at once.
+   * <p>
+   * Each viewer receives the packets in a single bundle packet on 1.19.4+, or
+   * one after the other on older versions.
+   *
+   * @param updates the updates to apply to this scoreboard
+   */
+  public void batchUpdate(Consumer<FastBoardBase<T>> updates) {
+    if (this.deferred.get() != null) {
+      updates.accept(this);
+      return;
+    }
 
+    this.deferred.set(Boolean.TRUE);
     try {
-      if (oldLines.size() != linesSize) {
-        List<T> oldLinesCopy = new ArrayList<>(oldLines);
+      updates.accept(this);
+    } finally {
+      this.deferred.remove();
+    }
+    drain();
+  }
 
-        if (oldLines.size() > linesSize) {
-          for (int i = oldLinesCopy.size(); i > linesSize; i--) {
-            sendTeamPacket(i - 1, TeamMode.REMOVE);
-            sendScorePacket(i - 1, ScoreboardAction.REMOVE);
+  /**
+   * Run the action on the thread sending the packets of this board: now if no other
+   * thread is sending them, or later by that thread.
+   * The actions and the line updates are sent in the order they were made.
+   *
+   * @param action the action sending the packets
+   */
+  protected final void queue(PacketAction action) {
+    if (this.drainer == Thread.currentThread()) {
+      try {
+        action.run();
+      } catch (Throwable t) {
+        throw new RuntimeException("Unable to update scoreboard", t);
+      }
+      return;
+    }
 
-            oldLines.remove(0);
+    this.actions.add(action);
+    drain();
+  }
+
+  // Send the snapshot after the actions queued before it
+  private void publish(Snapshot<T> snapshot) {
+    queue(new Publish<>(this, snapshot));
+  }
+
+  /**
+   * Run the queued actions. If another thread is already doing it, it will also run
+   * ours, so this never waits.
+   */
+  @SuppressWarnings("unchecked")
+  private void drain() {
+    if (this.drainer == Thread.currentThread() || this.deferred.get() != null) {
+      return;
+    }
+
+    // Actions queued while we were sending are run by us if their thread gave up
+    while (!this.actions.isEmpty() && this.draining.compareAndSet(false, true)) {
+      this.drainer = Thread.currentThread();
+      try {
+        PacketAction action;
+        while ((action = this.actions.poll()) != null) {
+          if (action instanceof Publish) {
+            // Consecutive updates are sent as one diff
+            Publish<T> publish = (Publish<T>) action;
+            while (this.actions.peek() instanceof Publish) {
+              Publish<T> next = (Publish<T>) this.actions.poll();
+              if (next.snapshot.version > publish.snapshot.version) {
+                publish = next;
+              }
+            }
+            action = publish;
           }
-        } else {
-          for (int i = oldLinesCopy.size(); i < linesSize; i++) {
-            sendScorePacket(i, ScoreboardAction.CHANGE);
-            sendTeamPacket(i, TeamMode.CREATE, null, null);
+
+          try {
+            action.run();
+          } catch (Throwable t) {
+            Bukkit.getLogger().log(Level.WARNING, "Unable to update scoreboard " + this.id, t);
           }
         }
+      } finally {
+        this.drainer = null;
+        this.draining.set(false);
       }
+    }
+  }
+
+  private void sendSnapshot(Snapshot<T> target) throws Throwable {
+    if (this.deleted.get()) {
+      return;
+    }
 
-      for (int i = 0; i < linesSize; i++) {
-        if (!Objects.equals(getLineByScore(oldLines, i), getLineByScore(i))) {
-          sendLineChange(i);
+    if (this.limited != null) {
+      // Only the limited players receive it, the others get it with the next update
+      for (Map.Entry<Snapshot<T>, List<Player>> group : groupByState(this.players).entrySet()) {
+        if (group.getKey().version < target.version) {
+          sendDiff(group.getValue(), group.getKey(), target);
+          for (Player player : group.getValue()) {
+            this.viewerSent.put(player, target);
+          }
         }
       }
-    } catch (Throwable t) {
-      throw new RuntimeException("Unable to update scoreboard lines", t);
+      return;
+    }
+
+    if (target.version <= this.sent.version) {
+      return;
+    }
+
+    for (Map.Entry<Snapshot<T>, List<Player>> group : groupByState(this.players).entrySet()) {
+      if (group.getKey().version < target.version) {
+        sendDiff(group.getValue(), group.getKey(), target);
+      }
+    }
+    this.sent = target;
+    this.viewerSent.values().removeIf(snapshot -> snapshot.version <= target.version);
+  }
+
+  private void sendDiff(List<Player> viewers, Snapshot<T> previous, Snapshot<T> target) throws Throwable {
+    withState(target, () -> batch(viewers, () -> {
+      if (!previous.title.equals(target.title)) {
+        sendObjectivePacket(ObjectiveMode.UPDATE);
+      }
+      sendLinesUpdate(new ArrayList<>(previous.lines), target.lines.size());
+    }));
+  }
+
+  /**
+   * Send the packets of the action to the viewers, batched by the title and lines
+   * they have. While the action runs, {@link #getSentLines()} returns their lines.
+   *
+   * @param viewers the viewers who receive the packets
+   * @param action  the action sending the packets
+   */
+  protected final void batchViewers(Collection<Player> viewers, PacketAction action) throws Throwable {
+    for (Map.Entry<Snapshot<T>, List<Player>> group : groupByState(viewers).entrySet()) {
+      withState(group.getKey(), () -> batch(group.getValue(), action));
+    }
+  }
+
+  // Viewers grouped by the title and lines they have (only the limited ones in limitSendPacket)
+  private Map<Snapshot<T>, List<Player>> groupByState(Collection<Player> viewers) {
+    Map<Snapshot<T>, List<Player>> groups = new LinkedHashMap<>();
+    for (Player viewer : viewers) {
+      if (this.limited == null || this.limited.contains(viewer)) {
+        groups.computeIfAbsent(this.viewerSent.getOrDefault(viewer, this.sent),
+            snapshot -> new ArrayList<>()).add(viewer);
+      }
+    }
+    return groups;
+  }
+
+  private void withState(Snapshot<T> state, PacketAction action) throws Throwable {
+    Snapshot<T> previous = this.current;
+    this.current = state;
+    try {
+      action.run();
+    } finally {
+      this.current = previous;
+    }
+  }
+
+  // Title and lines of the viewers receiving the current packets
+  private Snapshot<T> state() {
+    return this.current != null ? this.current : this.sent;
+  }
+
+  private void sendLinesUpdate(List<T> oldLines, int linesSize) throws Throwable {
+    if (oldLines.size() != linesSize) {
+      List<T> oldLinesCopy = new ArrayList<>(oldLines);
+
+      if (oldLines.size() > linesSize) {
+        for (int i = oldLinesCopy.size(); i > linesSize; i--) {
+          sendTeamPacket(i - 1, TeamMode.REMOVE);
+          sendScorePacket(i - 1, ScoreboardAction.REMOVE);
+
+          oldLines.remove(0);
+        }
+      } else {
+        for (int i = oldLinesCopy.size(); i < linesSize; i++) {
+          sendScorePacket(i, ScoreboardAction.CHANGE);
+          sendTeamPacket(i, TeamMode.CREATE, null, null);
+        }
+      }
+    }
+
+    for (int i = 0; i < linesSize; i++) {
+      if (!Objects.equals(getLineByScore(oldLines, i), getLineByScore(i))) {
+        sendLineChange(i);
+      }
     }
   }
 
   /**
    * Get the players who has the scoreboard.
    *
-   * @return current player for this FastBoard
+   * @return current player for this FastBoard (read only)
    */
   public Collection<Player> getPlayers() {
-    return this.players;
+    return Collections.unmodifiableList(this.players);
+  }
+
+  /**
+   * Get if the broadcast mode is enabled.
+   *
+   * @return true if the packets are sent from the viewers' channel event loops
+   * @see #setBroadcast(boolean)
+   */
+  public boolean isBroadcast() {
+    return this.broadcast;
+  }
+
+  /**
+   * Enable or disable the broadcast mode, useful for boards with many viewers.
+   * <p>
+   * In broadcast mode, the packets of an update are sent to each viewer by a single
+   * task on their netty channel's event loop, instead of being sent one by one from
+   * the caller's thread. The task still sends them through the player connection,
+   * so they keep their order with the server packets, go through the send listeners
+   * and wait for the connection to be ready like any other packet.
+   * If the channel cannot be accessed on this server, the packets are sent normally.
+   *
+   * @param broadcast true to enable the broadcast mode
+   */
+  public void setBroadcast(boolean broadcast) {
+    this.broadcast = broadcast;
   }
 
   /**
@@ -464,7 +771,7 @@ public abstract class FastBoardBase<T> {
    * @return true if the scoreboard is deleted
    */
   public boolean isDeleted() {
-    return this.deleted;
+    return this.deleted.get();
   }
 
   /**
@@ -473,23 +780,46 @@ public abstract class FastBoardBase<T> {
    * @return the size
    */
   public int size() {
-    return this.lines.size();
+    return this.snapshot.get().lines.size();
   }
 
   /**
    * Delete this FastBoard, and will remove the scoreboard for the associated
    * player if he is online.
-   * After this, all uses of {@link #updateLines} and {@link #updateTitle} will
-   * throw an {@link IllegalStateException}
+   * The board is deleted when this returns, even if another thread is sending its
+   * packets and removes the scoreboard later: {@link #isDeleted()} is true, the line
+   * updates not sent yet are dropped, and all uses of {@link #updateLines} and
+   * {@link #updateTitle} will throw an {@link IllegalStateException}
    *
    * @throws IllegalStateException if this was already call before
    */
   public void delete() {
-    this.hide();
-    this.deleted = true;
+    if (!this.deleted.compareAndSet(false, true)) {
+      throw new IllegalStateException("This FastBoard is deleted");
+    }
+    queue(() -> {
+      batchViewers(this.players, this::sendHide);
+      this.showing = false;
+      this.removed = true;
+    });
+  }
+
+  /**
+   * Send the line of the score to all the viewers.
+   *
+   * @param score the score of the line
+   */
+  protected void sendLineChange(int score) throws Throwable {
+    sendLineChange(score, getLineByScore(score));
   }
 
-  protected abstract void sendLineChange(int score) throws Throwable;
+  /**
+   * Send the line text for the score.
+   *
+   * @param score the score of the line
+   * @param line  the line text
+   */
+  protected abstract void sendLineChange(int score, T line) throws Throwable;
 
   protected abstract Object toMinecraftComponent(T value) throws Throwable;
 
@@ -497,18 +827,63 @@ public abstract class FastBoardBase<T> {
 
   protected abstract T emptyLine();
 
+  /**
+   * Get the lines the viewers receiving the current packets have (or are receiving),
+   * which may be older than {@link #getLines()} while an update is waiting to be sent.
+   *
+   * @return the sent lines (read only)
+   */
+  protected List<T> getSentLines() {
+    return state().lines;
+  }
+
   protected int getScoreByLine(int line) {
-    return this.lines.size() - line - 1;
+    return state().lines.size() - line - 1;
   }
 
   protected T getLineByScore(int score) {
-    return getLineByScore(this.lines, score);
+    return getLineByScore(state().lines, score);
   }
 
   protected T getLineByScore(List<T> lines, int score) {
     return score < lines.size() ? lines.get(lines.size() - score - 1) : null;
   }
 
+  /**
+   * Get the line of the score as seen by the viewer.
+   *
+   * @param viewer the viewer
+   * @param score  the score of the line
+   * @return the line
+   */
+  protected T getViewerLine(Player viewer, int score) {
+    return getLineByScore(score);
+  }
+
+  /**
+   * Send the objective and all the lines, as seen by the viewer.
+   *
+   * @param viewer the viewer
+   */
+  protected void sendFullState(Player viewer) throws Throwable {
+    sendObjectivePacket(ObjectiveMode.CREATE);
+    sendDisplayObjectivePacket();
+
+    for (int score = 0; score < state().lines.size(); score++) {
+      sendScorePacket(score, ScoreboardAction.CHANGE);
+      sendTeamPacket(score, TeamMode.CREATE, null, null);
+      sendLineChange(score, getViewerLine(viewer, score));
+    }
+  }
+
+  private void sendHide() throws Throwable {
+    for (int i = 0; i < state().lines.size(); i++) {
+      sendTeamPacket(i, TeamMode.REMOVE);
+    }
+
+    sendObjectivePacket(ObjectiveMode.REMOVE);
+  }
+
   protected void sendObjectivePacket(ObjectiveMode mode) throws Throwable {
     Object packet = PACKET_SB_OBJ.invoke();
 
@@ -516,7 +891,7 @@ public abstract class FastBoardBase<T> {
     setField(packet, int.class, mode.ordinal());
 
     if (mode != ObjectiveMode.REMOVE) {
-      setComponentField(packet, this.title, 1);
+      setComponentField(packet, state().title, 1);
 
       if (VersionType.V1_8.isHigherOrEqual()) {
         setField(packet, ENUM_SB_HEALTH_DISPLAY, ENUM_SB_HEALTH_DISPLAY_INTEGER);
@@ -609,13 +984,13 @@ public abstract class FastBoardBase<T> {
     sendPacket(packet);
   }
 
-  private void checkLineNumber(int line, boolean checkInRange, boolean checkMax) {
+  private void checkLineNumber(int line, int size, boolean checkInRange, boolean checkMax) {
     if (line < 0) {
       throw new IllegalArgumentException("Line number must be positive");
     }
 
-    if (checkInRange && line >= this.lines.size()) {
-      throw new IllegalArgumentException("Line number must be under " + this.lines.size());
+    if (checkInRange && line >= size) {
+      throw new IllegalArgumentException("Line number must be under " + size);
     }
 
     if (checkMax && line >= COLOR_CODES.length - 1) {
@@ -623,6 +998,12 @@ public abstract class FastBoardBase<T> {
     }
   }
 
+  private void checkNotDeleted() {
+    if (this.deleted.get()) {
+      throw new IllegalStateException("This FastBoard is deleted");
+    }
+  }
+
   private void sendModernScorePacket(int score, ScoreboardAction action) throws Throwable {
     String objName = COLOR_CODES[score];
     Object enumAction = action == ScoreboardAction.REMOVE
@@ -643,32 +1024,127 @@ public abstract class FastBoardBase<T> {
   }
 
   private void sendPacket(Object packet) throws Throwable {
-    if (this.deleted) {
+    if (this.removed) {
       throw new IllegalStateException("This FastBoard is deleted");
     }
 
-    for (Player player : (this.isChoicePlayers ? this.choicePlayers : this.players)) {
+    List<Object> packets = this.batch.get();
+    if (packets != null) {
+      packets.add(packet);
+      return;
+    }
+
+    sendPackets(this.players, Collections.singletonList(packet));
+  }
+
+  /**
+   * Collect the packets sent by the action and send them to the players at once.
+   * Nested calls join the outer batch (and its players).
+   *
+   * @param players the players who receive the packets
+   * @param action  the action sending the packets
+   */
+  protected final void batch(Collection<Player> players, PacketAction action) throws Throwable {
+    if (this.batch.get() != null) {
+      action.run();
+      return;
+    }
+
+    List<Object> packets = new ArrayList<>();
+    this.batch.set(packets);
+    try {
+      action.run();
+    } finally {
+      this.batch.remove();
+      sendPackets(players, packets);
+    }
+  }
+
+  private void sendPackets(Collection<Player> players, List<Object> packets) throws Throwable {
+    if (packets.isEmpty()) {
+      return;
+    }
+
+    List<Object> bundles = packets;
+    if (PACKET_BUNDLE != null && packets.size() > 1) {
+      bundles = new ArrayList<>(packets.size() / BUNDLE_SIZE_LIMIT + 1);
+      for (int i = 0; i < packets.size(); i += BUNDLE_SIZE_LIMIT) {
+        List<Object> bundle = packets.subList(i, Math.min(packets.size(), i + BUNDLE_SIZE_LIMIT));
+        bundles.add(PACKET_BUNDLE.invoke(new ArrayList<>(bundle)));
+      }
+    }
+
+    for (Player player : players) {
       if (player.isOnline()) {
+        // Resolve the connection once per player for the whole batch
         Object entityPlayer = PLAYER_GET_HANDLE.invoke(player);
         Object playerConnection = PLAYER_CONNECTION.invoke(entityPlayer);
-        SEND_PACKET.invoke(playerConnection, packet);
+        if (this.broadcast && CHANNEL_EVENT_LOOP != null) {
+          sendFromEventLoop(playerConnection, bundles);
+          continue;
+        }
+        for (Object packet : bundles) {
+          SEND_PACKET.invoke(playerConnection, packet);
+        }
       }
     }
+  }
+
+  private static void sendFromEventLoop(Object playerConnection, List<Object> packets)
+      throws Throwable {
+    Object channel = NETWORK_MANAGER_CHANNEL.invoke(PLAYER_NETWORK_MANAGER.invoke(playerConnection));
+    if (channel == null || !(boolean) CHANNEL_IS_OPEN.invoke(channel)) {
+      return;
+    }
+
+    // A single task per channel. The connection's own send method keeps the packets in
+    // order with the server ones, and queues them until the connection is ready.
+    Executor eventLoop = (Executor) CHANNEL_EVENT_LOOP.invoke(channel);
+    eventLoop.execute(() -> {
+      try {
+        for (Object packet : packets) {
+          SEND_PACKET.invoke(playerConnection, packet);
+        }
+      } catch (Throwable t) {
+        Bukkit.getLogger().log(Level.WARNING, "Unable to send scoreboard packets", t);
+      }
+    });
+  }
 
-    if (this.isChoicePlayers) {
-      this.choicePlayers = null;
-      this.isChoicePlayers = false;
+  private static Field findField(Class<?> clazz, Class<?> fieldType) {
+    for (Class<?> current = clazz; current != null; current = current.getSuperclass()) {
+      for (Field field : current.getDeclaredFields()) {
+        if (field.getType() == fieldType && !Modifier.isStatic(field.getModifiers())) {
+          field.setAccessible(true);
+          return field;
+        }
+      }
     }
+    return null;
   }
 
   public void limitSendPacket(Consumer<FastBoardBase<T>> consumer, Player... players) {
     this.limitSendPacket(consumer, Arrays.asList(players));
   }
 
+  /**
+   * Run the consumer and send its packets only to the given players.
+   * The other viewers receive its changes with the next update.
+   *
+   * @param consumer the updates to send
+   * @param players  the players who receive the packets
+   */
   public void limitSendPacket(Consumer<FastBoardBase<T>> consumer, Collection<Player> players) {
-    this.isChoicePlayers = true;
-    this.choicePlayers = players;
-    consumer.accept(this);
+    List<Player> targets = new ArrayList<>(players);
+    queue(() -> {
+      Collection<Player> previous = this.limited;
+      this.limited = targets;
+      try {
+        consumer.accept(this);
+      } finally {
+        this.limited = previous;
+      }
+    });
   }
 
   private void setField(Object object, Class<?> fieldType, Object value)
@@ -702,30 +1178,69 @@ public abstract class FastBoardBase<T> {
   }
 
   final public void show() {
-    try {
-      sendObjectivePacket(ObjectiveMode.CREATE);
-      sendDisplayObjectivePacket();
+    queue(() -> {
+      batchViewers(this.players, () -> {
+        sendObjectivePacket(ObjectiveMode.CREATE);
+        sendDisplayObjectivePacket();
+      });
       this.showing = true;
-    } catch (Throwable t) {
-      throw new RuntimeException("Unable to create scoreboard", t);
-    }
+    });
   }
 
   final public void hide() {
-    try {
-      for (int i = 0; i < this.lines.size(); i++) {
-        sendTeamPacket(i, TeamMode.REMOVE);
-      }
-
-      sendObjectivePacket(ObjectiveMode.REMOVE);
+    queue(() -> {
+      batchViewers(this.players, this::sendHide);
       this.showing = false;
-    } catch (Throwable t) {
-      throw new RuntimeException("Unable to delete scoreboard", t);
-    }
+    });
   }
 
   final public boolean isShowing() {
     return this.showing;
   }
 
+  @FunctionalInterface
+  protected interface PacketAction {
+    void run() throws Throwable;
+  }
+
+  // Immutable title and lines, replaced as a whole by the updates
+  private static final class Snapshot<T> {
+
+    private final T title;
+    private final List<T> lines;
+    // Increased by each update, so an older snapshot is never sent after a newer one
+    private final long version;
+
+    Snapshot(T title, List<T> lines, long version) {
+      this.title = title;
+      this.lines = lines;
+      this.version = version;
+    }
+
+    Snapshot<T> withTitle(T title) {
+      return new Snapshot<>(title, this.lines, this.version + 1);
+    }
+
+    Snapshot<T> withLines(List<T> lines) {
+      return new Snapshot<>(this.title, Collections.unmodifiableList(lines), this.version + 1);
+    }
+  }
+
+  // Marker of a published snapshot in the actions
+  private static final class Publish<T> implements PacketAction {
+
+    private final FastBoardBase<T> board;
+    private final Snapshot<T> snapshot;
+
+    Publish(FastBoardBase<T> board, Snapshot<T> snapshot) {
+      this.board = board;
+      this.snapshot = snapshot;
+    }
+
+    @Override
+    public void run() throws Throwable {
+      this.board.sendSnapshot(this.snapshot);
+    }
+  }
+
 }
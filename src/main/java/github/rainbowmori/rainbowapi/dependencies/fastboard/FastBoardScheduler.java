@@ -0,0 +1,277 @@
+package github.rainbowmori.rainbowapi.dependencies.fastboard;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Refresh many boards periodically, spread over the ticks.
+ * <p>
+ * Every tick, at most {@link #getBudget()} due boards are refreshed. The others wait for
+ * the next ticks. The refresh (line rendering and packet building) runs on a worker pool.
+ * Boards with many viewers can also send their packets from the netty event loops with
+ * {@link FastBoardBase#setBroadcast(boolean)}. A board is never refreshed twice at the
+ * same time: if its last refresh is still running when it is due again, it is skipped
+ * until the next tick.
+ * <pre>
+ * FastBoardScheduler scheduler = new FastBoardScheduler(plugin);
+ * scheduler.schedule(board, 20, b -&gt; b.updateLines(render(b)));
+ * scheduler.start();
+ * // onDisable
+ * scheduler.stop();
+ * </pre>
+ * A stopped scheduler can be started again, but its boards must be scheduled again.
+ */
+public final class FastBoardScheduler {
+
+  /**
+   * Default max number of boards refreshed per tick.
+   */
+  public static final int DEFAULT_BUDGET = 50;
+
+  private final Plugin plugin;
+  private final int threads;
+  private final AtomicInteger threadCount = new AtomicInteger();
+  private final Map<FastBoardBase<?>, Entry<?>> boards = new ConcurrentHashMap<>();
+  // Due boards waiting for the budget (main thread only)
+  private final ArrayDeque<Entry<?>> ready = new ArrayDeque<>();
+  private final AtomicLong refreshed = new AtomicLong();
+  private final AtomicLong skipped = new AtomicLong();
+
+  private volatile int budget = DEFAULT_BUDGET;
+  private volatile ExecutorService workers;
+  private BukkitTask task;
+  // Main thread only
+  private long currentTick;
+  private long placed;
+
+  /**
+   * Create a scheduler with a worker per half CPU.
+   *
+   * @param plugin the plugin owning the task
+   */
+  public FastBoardScheduler(Plugin plugin) {
+    this(plugin, Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+  }
+
+  /**
+   * Create a scheduler.
+   *
+   * @param plugin  the plugin owning the task
+   * @param threads the number of worker threads
+   */
+  public FastBoardScheduler(Plugin plugin, int threads) {
+    this.plugin = plugin;
+    this.threads = Math.max(1, threads);
+  }
+
+  /**
+   * Start the worker pool and the tick task.
+   */
+  public synchronized void start() {
+    if (this.task == null) {
+      // The pool of a previous start was shut down by stop()
+      this.workers = Executors.newFixedThreadPool(this.threads, runnable -> {
+        Thread thread = new Thread(runnable,
+            this.plugin.getName() + "-FastBoard-" + this.threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+      this.task = Bukkit.getScheduler().runTaskTimer(this.plugin, this::tick, 1L, 1L);
+    }
+  }
+
+  /**
+   * Stop the tick task, wait for the running refreshes and unschedule all the boards.
+   */
+  public synchronized void stop() {
+    if (this.task != null) {
+      this.task.cancel();
+      this.task = null;
+      this.workers.shutdown();
+      try {
+        if (!this.workers.awaitTermination(5, TimeUnit.SECONDS)) {
+          this.workers.shutdownNow();
+        }
+      } catch (InterruptedException e) {
+        this.workers.shutdownNow();
+        Thread.currentThread().interrupt();
+      }
+    }
+    // The entries still waiting in the ready queue are dropped by the next tick
+    this.boards.values().forEach(entry -> entry.cancelled = true);
+    this.boards.clear();
+  }
+
+  /**
+   * Refresh the board every {@code period} ticks.
+   * <p>
+   * The refresh is called from a worker thread, so it must not use the Bukkit API
+   * that requires the main thread. The broadcast mode of the board is not changed
+   * ({@link FastBoardBase#setBroadcast(boolean)}).
+   *
+   * @param board   the board
+   * @param period  the refresh period in ticks
+   * @param refresh the refresh of the board (update the title and lines)
+   * @param <B>     the board type
+   */
+  public <B extends FastBoardBase<?>> void schedule(B board, long period, Consumer<B> refresh) {
+    if (period <= 0) {
+      throw new IllegalArgumentException("period must be positive: " + period);
+    }
+    // The first refresh tick is chosen by the next tick, on the main thread
+    Entry<B> entry = new Entry<>(board, period, refresh);
+    Entry<?> previous = this.boards.put(board, entry);
+    if (previous != null) {
+      previous.cancelled = true;
+    }
+  }
+
+  /**
+   * Stop refreshing the board.
+   *
+   * @param board the board
+   */
+  public void unschedule(FastBoardBase<?> board) {
+    Entry<?> entry = this.boards.remove(board);
+    if (entry != null) {
+      entry.cancelled = true;
+    }
+  }
+
+  /**
+   * Get the max number of boards refreshed per tick.
+   *
+   * @return the budget
+   */
+  public int getBudget() {
+    return this.budget;
+  }
+
+  /**
+   * Change the max number of boards refreshed per tick.
+   *
+   * @param budget the budget
+   */
+  public void setBudget(int budget) {
+    if (budget <= 0) {
+      throw new IllegalArgumentException("budget must be positive: " + budget);
+    }
+    this.budget = budget;
+  }
+
+  /**
+   * Get the number of boards waiting for the budget (call from the main thread).
+   *
+   * @return the number of due boards not refreshed yet
+   */
+  public int getPending() {
+    return this.ready.size();
+  }
+
+  /**
+   * Get the number of refreshes done.
+   *
+   * @return the number of refreshes
+   */
+  public long getRefreshedCount() {
+    return this.refreshed.get();
+  }
+
+  /**
+   * Get the number of times a due board was skipped because its last refresh was
+   * still running.
+   *
+   * @return the number of skips
+   */
+  public long getSkippedCount() {
+    return this.skipped.get();
+  }
+
+  private void tick() {
+    this.currentTick++;
+
+    for (Entry<?> entry : this.boards.values()) {
+      if (entry.nextTick < 0) {
+        // Spread the boards scheduled at the same time over their period
+        entry.nextTick = this.currentTick + this.placed++ % entry.period;
+      }
+      if (!entry.queued && entry.nextTick <= this.currentTick) {
+        entry.queued = true;
+        this.ready.add(entry);
+      }
+    }
+
+    int started = 0;
+    int size = this.ready.size();
+    for (int i = 0; i < size && started < this.budget; i++) {
+      Entry<?> entry = this.ready.poll();
+      if (entry.cancelled) {
+        continue;
+      }
+      if (entry.board.isDeleted()) {
+        unschedule(entry.board);
+        continue;
+      }
+      if (!entry.running.compareAndSet(false, true)) {
+        // Single flight: keep it for the next tick
+        this.skipped.incrementAndGet();
+        this.ready.add(entry);
+        continue;
+      }
+
+      entry.queued = false;
+      entry.nextTick = this.currentTick + entry.period;
+      started++;
+      try {
+        this.workers.execute(entry::refresh);
+      } catch (RejectedExecutionException e) {
+        entry.running.set(false);
+        return;
+      }
+    }
+  }
+
+  private final class Entry<B extends FastBoardBase<?>> {
+
+    private final B board;
+    private final long period;
+    private final Consumer<B> refresh;
+    private final AtomicBoolean running = new AtomicBoolean();
+    // Main thread only (-1 until the first tick after it was scheduled)
+    private long nextTick = -1;
+    private boolean queued;
+    private volatile boolean cancelled;
+
+    Entry(B board, long period, Consumer<B> refresh) {
+      this.board = board;
+      this.period = period;
+      this.refresh = refresh;
+    }
+
+    void refresh() {
+      try {
+        if (!this.cancelled && !this.board.isDeleted()) {
+          this.refresh.accept(this.board);
+          refreshed.incrementAndGet();
+        }
+      } catch (Throwable t) {
+        plugin.getLogger().log(Level.WARNING, "Unable to refresh scoreboard " + this.board.getId(), t);
+      } finally {
+        this.running.set(false);
+      }
+    }
+  }
+}
@@ -0,0 +1,208 @@
+package github.rainbowmori.rainbowapi.dependencies.fastboard;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import net.kyori.adventure.text.Component;
+import org.bukkit.entity.Player;
+
+/**
+ * One scoreboard shared by all the viewers, with lines that can depend on the viewer.
+ * <p>
+ * Static lines ({@link #updateLine(int, Component)}) are sent once for all the viewers,
+ * with the same packets. Viewer lines ({@link #updateLine(int, Function)}) are evaluated
+ * for each viewer by {@link #update()}, and only the lines that changed for this viewer
+ * are sent to them.
+ * <pre>
+ * FastBoardTemplate board = new FastBoardTemplate(players);
+ * board.updateTitle(Util.mm("&lt;gold&gt;Arena"));
+ * board.updateLine(0, Util.mm("&lt;gray&gt;Map: Castle"));
+ * board.updateLine(1, player -&gt; Util.mm("&lt;gray&gt;Kills: " + kills.get(player)));
+ * board.show();
+ * // every second
+ * board.update();
+ * </pre>
+ * {@link #getLines()} returns an empty line in place of the viewer lines.
+ */
+public class FastBoardTemplate extends FastBoard {
+
+  // Viewer lines by line number
+  private final Map<Integer, Function<Player, Component>> viewerLines = new ConcurrentHashMap<>();
+  // Text of a score that may still show an old viewer line (compared by identity)
+  private static final Component UNKNOWN = Component.text("unknown");
+
+  // Last viewer lines sent to each viewer, by score (only used while sending packets)
+  private final Map<UUID, Component[]> sentLines = new HashMap<>();
+
+  public FastBoardTemplate(Player player) {
+    super(player);
+  }
+
+  public FastBoardTemplate(Collection<Player> players) {
+    super(players);
+  }
+
+  /**
+   * Update a static line, shown the same for all the viewers.
+   *
+   * @param line the line number
+   * @param text the new line text
+   */
+  @Override
+  public void updateLine(int line, Component text) {
+    this.viewerLines.remove(line);
+    super.updateLine(line, text);
+    update();
+  }
+
+  /**
+   * Update a viewer line, and send it to the viewers.
+   *
+   * @param line     the line number
+   * @param function the line text for a viewer
+   * @throws IllegalArgumentException if the line number is negative or too high
+   */
+  public void updateLine(int line, Function<Player, Component> function) {
+    Objects.requireNonNull(function, "function");
+    if (line < 0) {
+      throw new IllegalArgumentException("Line number must be positive");
+    }
+    if (line >= COLOR_CODES.length - 1) {
+      throw new IllegalArgumentException("Line number is too high: " + line);
+    }
+
+    this.viewerLines.put(line, function);
+    super.updateLine(line, emptyLine());
+    update();
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Viewer lines keep their function: the texts given for them are ignored.
+   */
+  @Override
+  public void updateLines(Collection<Component> lines) {
+    super.updateLines(lines);
+    this.viewerLines.keySet().removeIf(line -> line >= lines.size());
+    update();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void removeLine(int line) {
+    if (line >= 0 && line < size()) {
+      Map<Integer, Function<Player, Component>> shifted = new HashMap<>();
+      this.viewerLines.forEach((index, function) -> {
+        if (index != line) {
+          shifted.put(index > line ? index - 1 : index, function);
+        }
+      });
+      this.viewerLines.clear();
+      this.viewerLines.putAll(shifted);
+    }
+
+    super.removeLine(line);
+    update();
+  }
+
+  /**
+   * Evaluate the viewer lines for all the viewers, and send the ones that changed.
+   */
+  public void update() {
+    queue(() -> {
+      if (this.viewerLines.isEmpty() && this.sentLines.isEmpty()) {
+        return;
+      }
+
+      Set<UUID> viewers = new HashSet<>();
+      for (Player viewer : getPlayers()) {
+        viewers.add(viewer.getUniqueId());
+        batchViewers(Collections.singletonList(viewer), () -> {
+          int size = getSentLines().size();
+          Component[] sent = sentLines(viewer);
+          for (int score = 0; score < size; score++) {
+            Function<Player, Component> function = this.viewerLines.get(size - score - 1);
+            if (function == null) {
+              // Was a viewer line, back to the static line
+              if (sent[score] != null) {
+                sent[score] = null;
+                sendLineChange(score, getLineByScore(score));
+              }
+              continue;
+            }
+
+            Component line = function.apply(viewer);
+            if (sent[score] == UNKNOWN || !Objects.equals(line, sent[score])) {
+              sent[score] = line;
+              sendLineChange(score, line);
+            }
+          }
+        });
+      }
+      this.sentLines.keySet().retainAll(viewers);
+    });
+  }
+
+  /**
+   * Get if the line is a viewer line.
+   *
+   * @param line the line number
+   * @return true if the line is evaluated for each viewer
+   */
+  public boolean isViewerLine(int line) {
+    return this.viewerLines.containsKey(line);
+  }
+
+  @Override
+  protected void sendLineChange(int score) throws Throwable {
+    // The team of this score shows another text now
+    for (Component[] sent : this.sentLines.values()) {
+      if (score < sent.length) {
+        sent[score] = null;
+      }
+    }
+
+    if (!this.viewerLines.containsKey(getSentLines().size() - score - 1)) {
+      super.sendLineChange(score);
+    }
+  }
+
+  @Override
+  protected Component getViewerLine(Player viewer, int score) {
+    Function<Player, Component> function = this.viewerLines.get(getSentLines().size() - score - 1);
+    if (function == null) {
+      return super.getViewerLine(viewer, score);
+    }
+
+    Component line = function.apply(viewer);
+    sentLines(viewer)[score] = line;
+    return line;
+  }
+
+  private Component[] sentLines(Player viewer) {
+    int size = getSentLines().size();
+    Component[] sent = this.sentLines.get(viewer.getUniqueId());
+    if (sent == null || sent.length != size) {
+      // The scores moved: every viewer line must be sent again, and the static lines
+      // too if a viewer line was shown, as their diff doesn't see the viewer lines
+      boolean shown = sent != null && Arrays.stream(sent).anyMatch(Objects::nonNull);
+      sent = new Component[size];
+      if (shown) {
+        Arrays.fill(sent, UNKNOWN);
+      }
+      this.sentLines.put(viewer.getUniqueId(), sent);
+    }
+    return sent;
+  }
+}
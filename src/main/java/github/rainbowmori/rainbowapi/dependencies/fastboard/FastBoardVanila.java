@@ -98,9 +98,8 @@ public class FastBoardVanila extends FastBoardBase<String> {
   }
 
   @Override
-  protected void sendLineChange(int score) throws Throwable {
+  protected void sendLineChange(int score, String line) throws Throwable {
     int maxLength = hasLinesMaxLength() ? 16 : 1024;
-    String line = getLineByScore(score);
     String prefix;
     String suffix = "";
 
@@ -0,0 +1,90 @@
+package github.rainbowmori.rainbowapi.listener;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 名前と {@link UUID} から {@link World} を引くためのキャッシュ
+ * <p>
+ * ワールドの読み込みとアンロードで更新されるため、{@link Bukkit#getWorld(String)} を毎回呼ぶ必要がありません
+ * 名前は {@link Bukkit#getWorld(String)} と同じように大文字と小文字を区別しません
+ */
+public class WorldCache implements Listener {
+
+  private static final WorldCache INSTANCE = new WorldCache();
+
+  // 小文字にした名前
+  private final Map<String, World> byName = new ConcurrentHashMap<>();
+  private final Map<UUID, World> byUUID = new ConcurrentHashMap<>();
+
+  private WorldCache() {
+  }
+
+  public static WorldCache getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * @param name ワールドの名前
+   * @return 読み込まれているワールド (ない場合はnull)
+   */
+  public @Nullable World getWorld(@NotNull String name) {
+    World world = byName.get(name.toLowerCase(Locale.ROOT));
+    if (world == null) {
+      world = Bukkit.getWorld(name);
+      if (world != null) {
+        add(world);
+      }
+    }
+    return world;
+  }
+
+  /**
+   * @param uuid ワールドの {@link UUID}
+   * @return 読み込まれているワールド (ない場合はnull)
+   */
+  public @Nullable World getWorld(@NotNull UUID uuid) {
+    World world = byUUID.get(uuid);
+    if (world == null) {
+      world = Bukkit.getWorld(uuid);
+      if (world != null) {
+        add(world);
+      }
+    }
+    return world;
+  }
+
+  private void add(World world) {
+    byName.put(world.getName().toLowerCase(Locale.ROOT), world);
+    byUUID.put(world.getUID(), world);
+  }
+
+  @EventHandler(priority = EventPriority.MONITOR)
+  public void load(WorldLoadEvent e) {
+    add(e.getWorld());
+  }
+
+  @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+  public void unload(WorldUnloadEvent e) {
+    World world = e.getWorld();
+    byName.remove(world.getName().toLowerCase(Locale.ROOT), world);
+    byUUID.remove(world.getUID(), world);
+  }
+
+  @Override
+  public String toString() {
+    return "WorldCache []";
+  }
+
+}
@@ -0,0 +1,276 @@
+package github.rainbowmori.rainbowapi.util;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import net.kyori.adventure.text.Component;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * {@link Util#cast(Object)} や {@link Util#important(Object)} のメッセージをまとめて送信するクラス
+ * <p>
+ * メッセージは送信先ごとのキューに入り、次のtickから毎tick {@link #getRateLimit(Target)} 件ずつ送信されます
+ * 同じtickに送られた同じメッセージは1つにまとめられ、キューが {@link #getBacklogLimit()} を超えた分は破棄されます
+ * タスクが開始されていない場合はすぐに送信します
+ */
+public final class BroadcastDispatcher {
+
+  /**
+   * デフォルトの1tickに送信する最大の件数
+   */
+  public static final int DEFAULT_RATE_LIMIT = 20;
+
+  /**
+   * デフォルトの送信されていないメッセージを残しておく最大の件数
+   */
+  public static final int DEFAULT_BACKLOG_LIMIT = 1000;
+
+  // 送信先ごとの送信されていないメッセージ (static初期化の後は変更しない)
+  private static final Map<Target, Queue> queues = new EnumMap<>(Target.class);
+  // 送信先の ordinal ごとの1tickに送信する最大の件数
+  private static final AtomicIntegerArray rateLimits = new AtomicIntegerArray(
+      Target.values().length);
+
+  private static final AtomicLong delivered = new AtomicLong();
+  private static final AtomicLong merged = new AtomicLong();
+  private static final AtomicLong dropped = new AtomicLong();
+
+  private static volatile int backlogLimit = DEFAULT_BACKLOG_LIMIT;
+  private static volatile BukkitTask task;
+
+  static {
+    for (Target target : Target.values()) {
+      queues.put(target, new Queue());
+      rateLimits.set(target.ordinal(), DEFAULT_RATE_LIMIT);
+    }
+  }
+
+  private BroadcastDispatcher() {
+  }
+
+  /**
+   * 毎tickメッセージを送信するタスクを開始します
+   * <p>
+   * {@link github.rainbowmori.rainbowapi.RainbowAPI#onEnable()} から呼ばれます
+   *
+   * @param plugin タスクを登録するプラグイン
+   */
+  public static synchronized void start(Plugin plugin) {
+    if (task == null) {
+      task = Bukkit.getScheduler().runTaskTimer(plugin, BroadcastDispatcher::tick, 1L, 1L);
+    }
+  }
+
+  /**
+   * タスクを停止し、送信されていないすべてのメッセージを送信します
+   * <p>
+   * {@link github.rainbowmori.rainbowapi.RainbowAPI#onDisable()} から呼ばれます
+   */
+  public static void stop() {
+    synchronized (BroadcastDispatcher.class) {
+      if (task != null) {
+        task.cancel();
+        task = null;
+      }
+    }
+    for (Target target : Target.values()) {
+      drain(target, Integer.MAX_VALUE);
+      Queue queue = queues.get(target);
+      synchronized (queue) {
+        // 再開した後のメッセージを、送信済みのメッセージとまとめない
+        queue.seen.clear();
+      }
+    }
+  }
+
+  /**
+   * すべてのプレイヤーとコンソールに送信します
+   *
+   * @param message メッセージ
+   */
+  public static void broadcast(Component message) {
+    submit(Target.ALL, message);
+  }
+
+  /**
+   * OPのプレイヤーに送信します
+   *
+   * @param message メッセージ
+   */
+  public static void important(Component message) {
+    submit(Target.OPERATORS, message);
+  }
+
+  /**
+   * target にメッセージを送信します
+   * <p>
+   * タスクが開始されている場合は次のtick以降にメインスレッドから送信されます
+   *
+   * @param target  送信先
+   * @param message メッセージ
+   */
+  public static void submit(Target target, Component message) {
+    // stop と同じロックで確認して入れ、stop で送信されずに残らないようにする
+    synchronized (BroadcastDispatcher.class) {
+      if (task != null) {
+        enqueue(target, message);
+        return;
+      }
+    }
+    deliver(target, message);
+  }
+
+  private static void enqueue(Target target, Component message) {
+    Queue queue = queues.get(target);
+    synchronized (queue) {
+      if (queue.seen.contains(message)) {
+        merged.incrementAndGet();
+      } else if (queue.messages.size() >= backlogLimit) {
+        dropped.incrementAndGet();
+      } else {
+        queue.messages.add(message);
+        queue.seen.add(message);
+      }
+    }
+  }
+
+  private static void tick() {
+    for (Target target : Target.values()) {
+      Queue queue = queues.get(target);
+      synchronized (queue) {
+        // 前のtickに送られたメッセージとはまとめない
+        queue.seen.clear();
+      }
+      drain(target, rateLimits.get(target.ordinal()));
+    }
+  }
+
+  private static void drain(Target target, int limit) {
+    Queue queue = queues.get(target);
+    for (int i = 0; i < limit; i++) {
+      Component message;
+      synchronized (queue) {
+        message = queue.messages.poll();
+      }
+      if (message == null) {
+        return;
+      }
+      deliver(target, message);
+    }
+  }
+
+  private static void deliver(Target target, Component message) {
+    switch (target) {
+      case ALL:
+        Bukkit.broadcast(message);
+        break;
+      case OPERATORS:
+        for (Player player : Bukkit.getOnlinePlayers()) {
+          if (player.isOp()) {
+            player.sendMessage(message);
+          }
+        }
+        break;
+    }
+    delivered.incrementAndGet();
+  }
+
+  /**
+   * @param target 送信先
+   * @return target に1tickに送信する最大の件数
+   */
+  public static int getRateLimit(Target target) {
+    return rateLimits.get(target.ordinal());
+  }
+
+  /**
+   * target に1tickに送信する最大の件数を変更します
+   *
+   * @param target 送信先
+   * @param limit  1tickに送信する最大の件数
+   */
+  public static void setRateLimit(Target target, int limit) {
+    if (limit <= 0) {
+      throw new IllegalArgumentException("limit must be positive: " + limit);
+    }
+    rateLimits.set(target.ordinal(), limit);
+  }
+
+  /**
+   * @return 送信先ごとの送信されていないメッセージを残しておく最大の件数
+   */
+  public static int getBacklogLimit() {
+    return backlogLimit;
+  }
+
+  /**
+   * @param limit 送信先ごとの送信されていないメッセージを残しておく最大の件数
+   */
+  public static void setBacklogLimit(int limit) {
+    if (limit <= 0) {
+      throw new IllegalArgumentException("limit must be positive: " + limit);
+    }
+    backlogLimit = limit;
+  }
+
+  /**
+   * @param target 送信先
+   * @return target の送信されていないメッセージの数
+   */
+  public static int getPending(Target target) {
+    Queue queue = queues.get(target);
+    synchronized (queue) {
+      return queue.messages.size();
+    }
+  }
+
+  /**
+   * @return 送信したメッセージの数
+   */
+  public static long getDeliveredCount() {
+    return delivered.get();
+  }
+
+  /**
+   * @return 同じtickに送られた同じメッセージにまとめられたメッセージの数
+   */
+  public static long getMergedCount() {
+    return merged.get();
+  }
+
+  /**
+   * @return キューがいっぱいで破棄されたメッセージの数
+   */
+  public static long getDroppedCount() {
+    return dropped.get();
+  }
+
+  /**
+   * メッセージの送信先
+   */
+  public enum Target {
+    /**
+     * すべてのプレイヤーとコンソール ({@link Bukkit#broadcast(Component)})
+     */
+    ALL,
+    /**
+     * OPのプレイヤー
+     */
+    OPERATORS
+  }
+
+  // 送信先ごとの送信されていないメッセージと、このtickに送られたメッセージ
+  private static final class Queue {
+
+    private final ArrayDeque<Component> messages = new ArrayDeque<>();
+    private final Set<Component> seen = new HashSet<>();
+  }
+
+}
@@ -0,0 +1,160 @@
+package github.rainbowmori.rainbowapi.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import github.rainbowmori.rainbowapi.api.PropertyAPI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * {key} を含む文字列を一度だけ解析した {@link FormatterUtil} のテンプレート
+ * <p>
+ * 文字列と {key} の並びに分けて保存するため、フォーマットするときに正規表現を使いません
+ * 値の $ や \ もそのまま出力されます
+ */
+public final class FormatTemplate {
+
+  // 文字列ごとの解析済みのテンプレート
+  private static final Cache<String, FormatTemplate> cache = CacheBuilder.newBuilder()
+      .maximumSize(1024).build();
+
+  // literals[0] keys[0] literals[1] keys[1] ... literals[n] の順に並ぶ
+  private final String[] literals;
+  private final String[] keys;
+  private final int literalLength;
+
+  private FormatTemplate(String[] literals, String[] keys) {
+    this.literals = literals;
+    this.keys = keys;
+    int length = 0;
+    for (String literal : literals) {
+      length += literal.length();
+    }
+    this.literalLength = length;
+  }
+
+  /**
+   * format を解析したテンプレートを返します (同じ文字列の場合はキャッシュしたものを返します)
+   *
+   * @param format {key} を含む文字列
+   * @return テンプレート
+   */
+  public static FormatTemplate compile(String format) {
+    try {
+      return cache.get(format, () -> parse(format));
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  // {\w+} を探して文字列と key に分ける
+  private static FormatTemplate parse(String format) {
+    List<String> literals = new ArrayList<>();
+    List<String> keys = new ArrayList<>();
+    int lastEnd = 0;
+    int index = format.indexOf('{');
+    while (index >= 0) {
+      int end = index + 1;
+      while (end < format.length() && isWordChar(format.charAt(end))) {
+        end++;
+      }
+      if (end > index + 1 && end < format.length() && format.charAt(end) == '}') {
+        literals.add(format.substring(lastEnd, index));
+        keys.add(format.substring(index + 1, end));
+        lastEnd = end + 1;
+        index = format.indexOf('{', lastEnd);
+      } else {
+        index = format.indexOf('{', index + 1);
+      }
+    }
+    literals.add(format.substring(lastEnd));
+    return new FormatTemplate(literals.toArray(String[]::new), keys.toArray(String[]::new));
+  }
+
+  private static boolean isWordChar(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+  }
+
+  /**
+   * @return テンプレートの {key} の key
+   */
+  public List<String> getKeys() {
+    return List.of(keys);
+  }
+
+  /**
+   * map の値でフォーマットします (ない値の {key} は取り除かれます)
+   *
+   * @param map map
+   * @return フォーマットされた文字列
+   */
+  public String format(Map<?, ?> map) {
+    return format(map::get, false);
+  }
+
+  /**
+   * プロパティの値でフォーマットします (ない値の {key} はそのまま残ります)
+   *
+   * @param props プロパティ
+   * @return フォーマットされた文字列
+   */
+  public String format(Properties props) {
+    return format(props::getProperty, true);
+  }
+
+  /**
+   * {@link PropertyAPI#getSnapshot()} の値でフォーマットします (ない値の {key} はそのまま残ります)
+   *
+   * @param properties プロパティ
+   * @return フォーマットされた文字列
+   */
+  public String format(PropertyAPI properties) {
+    return format(properties.getSnapshot()::get, true);
+  }
+
+  /**
+   * values の値でフォーマットします
+   *
+   * @param values      key から値を取得する処理
+   * @param keepMissing 値がnullの {key} を残すか
+   * @return フォーマットされた文字列
+   */
+  public String format(Function<String, ?> values, boolean keepMissing) {
+    if (keys.length == 0) {
+      return literals[0];
+    }
+    StringBuilder sb = new StringBuilder(literalLength + keys.length * 16);
+    formatTo(sb, values, keepMissing);
+    return sb.toString();
+  }
+
+  /**
+   * values の値でフォーマットした文字列を sb に追加します
+   * <p>
+   * 同じ {@link StringBuilder} を使い回すことで、フォーマットのたびに作成せずに済みます
+   *
+   * @param sb          追加する先
+   * @param values      key から値を取得する処理
+   * @param keepMissing 値がnullの {key} を残すか
+   * @return sb
+   */
+  public StringBuilder formatTo(StringBuilder sb, Function<String, ?> values,
+      boolean keepMissing) {
+    sb.append(literals[0]);
+    for (int i = 0; i < keys.length; i++) {
+      Object value = values.apply(keys[i]);
+      if (value != null) {
+        sb.append(value);
+      } else if (keepMissing) {
+        sb.append('{').append(keys[i]).append('}');
+      }
+      sb.append(literals[i + 1]);
+    }
+    return sb;
+  }
+
+}
@@ -1,18 +1,16 @@
 package github.rainbowmori.rainbowapi.util;
 
+import github.rainbowmori.rainbowapi.api.PropertyAPI;
 import java.util.Map;
 import java.util.Properties;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * {key}をその値によって文字列をフォーマットする
+ * <p>
+ * 文字列は {@link FormatTemplate} として解析したものをキャッシュして使います
  */
 public class FormatterUtil {
 
-  // {\w+} → \w+
-  private static final Pattern pattern = Pattern.compile("\\{(\\w+)}");
-
   private FormatterUtil() {
   }
 
@@ -23,21 +21,8 @@ public class FormatterUtil {
    * @param map    map
    * @return mapの値によってフォーマットされた文字列
    */
-  public static String format(String format, Map<Object, Object> map) {
-    Matcher matcher = pattern.matcher(format);
-    StringBuilder sb = new StringBuilder();
-    int lastEnd = 0;
-    while (matcher.find()) {
-      sb.append(format, lastEnd, matcher.start());
-      lastEnd = matcher.end();
-      Object parameter = map.get(matcher.group(1));
-      if (parameter == null) {
-        continue;
-      }
-      sb.append(parameter);
-    }
-    sb.append(format.substring(lastEnd));
-    return sb.toString();
+  public static String format(String format, Map<?, ?> map) {
+    return FormatTemplate.compile(format).format(map);
   }
 
   /**
@@ -49,17 +34,20 @@ public class FormatterUtil {
    */
 
   public static String format(String format, Properties props) {
-    Matcher matcher = pattern.matcher(format);
-    StringBuilder sb = new StringBuilder();
-    while (matcher.find()) {
-      String parameter = props.getProperty(matcher.group(1));
-      if (parameter == null) {
-        continue;
-      }
-      matcher.appendReplacement(sb, parameter);
-    }
-    matcher.appendTail(sb);
-    return sb.toString();
+    return FormatTemplate.compile(format).format(props);
+  }
+
+  /**
+   * 文字列を {@link PropertyAPI#getSnapshot()} によってフォーマットします。
+   * <p>
+   * ロックを取らずに読み込むため、どのスレッドからでも呼べます ない値の {key} はそのまま残ります
+   *
+   * @param format     フォーマットする文字列
+   * @param properties プロパティ
+   * @return プロパティの値によってフォーマットされた文字列
+   */
+  public static String format(String format, PropertyAPI properties) {
+    return FormatTemplate.compile(format).format(properties);
   }
 
 }
@@ -144,6 +144,21 @@ public class ItemBuilder {
     return lore(Arrays.asList(lore));
   }
 
+  /**
+   * lore のテンプレートに values を入れて変更します (MiniMessage は解析されません)
+   *
+   * @param lore   loreの各行のテンプレート
+   * @param values テンプレートの {key} に入れる値
+   * @return new instance (use {@link #build()} to create)
+   */
+  public ItemBuilder lore(@NotNull List<MessageTemplate> lore, @NotNull Map<?, ?> values) {
+    List<Component> rendered = new ArrayList<>(lore.size());
+    for (MessageTemplate template : lore) {
+      rendered.add(template.render(values));
+    }
+    return changeItemMeta(meta -> meta.lore(rendered));
+  }
+
   /**
    * loreの追加
    *
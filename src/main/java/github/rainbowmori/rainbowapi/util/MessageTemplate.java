@@ -0,0 +1,226 @@
+package github.rainbowmori.rainbowapi.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.ComponentLike;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.format.TextDecoration;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+
+/**
+ * {key} を含む MiniMessage の文字列を一度だけ解析した {@link Component} のテンプレート
+ * <p>
+ * {key} の部分は値を入れる穴として解析されるため、{@link #render(Map)} では MiniMessage を解析せずに
+ * 穴の {@link Component} だけを作成します 値が {@link ComponentLike} の場合はそのまま、それ以外は文字列の
+ * {@link Component#text(String)} として入ります (プレイヤーの入力を入れても MiniMessage のタグとして解析されません)
+ * <pre>
+ * MessageTemplate template = MessageTemplate.compile("&lt;gray&gt;Balance: &lt;gold&gt;{amount}");
+ * player.sendMessage(template.render(Map.of("amount", 100)));
+ * </pre>
+ * {key} が {@code <click:run_command:/pay {player}>} のようにタグの中にある場合は穴にできないため、
+ * 値を文字列に入れてから毎回 {@link Util#mm(Object, boolean)} で変換します
+ * (値のタグは {@link MiniMessage#escapeTags(String)} でエスケープするため、この場合もタグとして解析されません)
+ */
+public final class MessageTemplate {
+
+  // 解析するときに {key} の代わりに入れる文字 (私用領域のため通常の文字列には含まれない)
+  private static final char HOLE = '\uE000';
+
+  // 文字列ごとの解析済みのテンプレート
+  private static final Cache<String, MessageTemplate> cache = CacheBuilder.newBuilder()
+      .maximumSize(1024).build();
+
+  private final FormatTemplate format;
+  // 穴にできない場合はnull
+  private final Node root;
+
+  private MessageTemplate(FormatTemplate format, Node root) {
+    this.format = format;
+    this.root = root;
+  }
+
+  /**
+   * message を解析したテンプレートを返します (同じ文字列の場合はキャッシュしたものを返します)
+   *
+   * @param message {key} を含む MiniMessage の文字列
+   * @return テンプレート
+   */
+  public static MessageTemplate compile(String message) {
+    try {
+      return cache.get(message, () -> parse(message));
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  private static MessageTemplate parse(String message) {
+    FormatTemplate format = FormatTemplate.compile(message);
+    int holes = format.getKeys().size();
+    if (holes == 0) {
+      return new MessageTemplate(format, new Node(Util.mm(message, false)));
+    }
+    // {key} を HOLE に置き換え、タグの中にある場合は穴にしない
+    String marked = format.format(key -> HOLE, false);
+    if (insideTag(marked)) {
+      return new MessageTemplate(format, null);
+    }
+    int[] next = {0};
+    Node root = compileNode(MiniMessage.miniMessage().deserialize(marked)
+        .decoration(TextDecoration.ITALIC, false), next);
+    // 文字列の順番に穴が見つからなかった場合 (ホバーの中など) も穴にしない
+    return new MessageTemplate(format, next[0] == holes ? root : null);
+  }
+
+  private static boolean insideTag(String marked) {
+    int index = marked.indexOf(HOLE);
+    while (index >= 0) {
+      if (marked.lastIndexOf('<', index) > marked.lastIndexOf('>', index)) {
+        return true;
+      }
+      index = marked.indexOf(HOLE, index + 1);
+    }
+    return false;
+  }
+
+  // 穴を含まない Component はそのまま使い、含む場合は穴ごとに分けた子に組み替える
+  private static Node compileNode(Component component, int[] next) {
+    int start = next[0];
+    Object[] parts = null;
+    if (component instanceof TextComponent) {
+      String content = ((TextComponent) component).content();
+      if (content.indexOf(HOLE) >= 0) {
+        parts = split(content, next);
+      }
+    }
+    List<Component> children = component.children();
+    Node[] nodes = new Node[children.size()];
+    for (int i = 0; i < nodes.length; i++) {
+      nodes[i] = compileNode(children.get(i), next);
+    }
+    if (next[0] == start) {
+      return new Node(component);
+    }
+    Component base = parts != null ? ((TextComponent) component).content("") : component;
+    return new Node(base.children(List.of()), parts != null ? parts : new Object[0], nodes);
+  }
+
+  // 文字列を定数の Component と穴の番号 (Integer) に分ける
+  private static Object[] split(String content, int[] next) {
+    List<Object> parts = new ArrayList<>();
+    int last = 0;
+    int index = content.indexOf(HOLE);
+    while (index >= 0) {
+      if (index > last) {
+        parts.add(Component.text(content.substring(last, index)));
+      }
+      parts.add(next[0]++);
+      last = index + 1;
+      index = content.indexOf(HOLE, last);
+    }
+    if (last < content.length()) {
+      parts.add(Component.text(content.substring(last)));
+    }
+    return parts.toArray();
+  }
+
+  /**
+   * @return テンプレートの {key} の key
+   */
+  public List<String> getKeys() {
+    return format.getKeys();
+  }
+
+  /**
+   * map の値を穴に入れた {@link Component} を作成します (ない値の {key} は取り除かれます)
+   *
+   * @param map map
+   * @return 作成した {@link Component}
+   */
+  public Component render(Map<?, ?> map) {
+    return render(map::get);
+  }
+
+  /**
+   * values の値を穴に入れた {@link Component} を作成します (値がnullの {key} は取り除かれます)
+   *
+   * @param values key から値を取得する処理
+   * @return 作成した {@link Component}
+   */
+  public Component render(Function<String, ?> values) {
+    List<String> keys = format.getKeys();
+    if (root == null) {
+      return Util.mm(format.format(key -> toString(values.apply(key)), false), false);
+    }
+    if (keys.isEmpty()) {
+      return root.constant;
+    }
+    Component[] filled = new Component[keys.size()];
+    for (int i = 0; i < filled.length; i++) {
+      filled[i] = toComponent(values.apply(keys.get(i)));
+    }
+    return root.render(filled);
+  }
+
+  private static Component toComponent(Object value) {
+    if (value == null) {
+      return Component.empty();
+    }
+    if (value instanceof ComponentLike) {
+      return ((ComponentLike) value).asComponent();
+    }
+    return Component.text(String.valueOf(value));
+  }
+
+  private static String toString(Object value) {
+    if (value instanceof ComponentLike) {
+      return Util.serialize(((ComponentLike) value).asComponent());
+    }
+    // プレイヤーの入力などが click や hover のタグとして解析されないようにする
+    return value == null ? null : MiniMessage.miniMessage().escapeTags(String.valueOf(value));
+  }
+
+  // 解析済みの Component の木 (constant がnullでない場合は穴を含まない)
+  private static final class Node {
+
+    private final Component constant;
+    private final Component base;
+    // 定数の Component または穴の番号 (Integer)
+    private final Object[] parts;
+    private final Node[] children;
+
+    Node(Component constant) {
+      this.constant = constant;
+      this.base = null;
+      this.parts = null;
+      this.children = null;
+    }
+
+    Node(Component base, Object[] parts, Node[] children) {
+      this.constant = null;
+      this.base = base;
+      this.parts = parts;
+      this.children = children;
+    }
+
+    Component render(Component[] values) {
+      if (constant != null) {
+        return constant;
+      }
+      List<Component> rendered = new ArrayList<>(parts.length + children.length);
+      for (Object part : parts) {
+        rendered.add(part instanceof Integer ? values[(Integer) part] : (Component) part);
+      }
+      for (Node child : children) {
+        rendered.add(child.render(values));
+      }
+      return base.children(rendered);
+    }
+  }
+
+}
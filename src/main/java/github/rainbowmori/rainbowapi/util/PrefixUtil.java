@@ -1,5 +1,6 @@
 package github.rainbowmori.rainbowapi.util;
 
+import java.util.Map;
 import java.util.UUID;
 import net.kyori.adventure.text.Component;
 import org.bukkit.Bukkit;
@@ -114,12 +115,29 @@ public class PrefixUtil {
     }
   }
 
+  public final void send(UUID uuid, MessageTemplate template, Map<?, ?> values) {
+    send(Bukkit.getPlayer(uuid), template, values);
+  }
+
+  /**
+   * template に values を入れたメッセージを送信します (MiniMessage は解析されません)
+   *
+   * @param sender   送信先
+   * @param template 送信するメッセージのテンプレート
+   * @param values   テンプレートの {key} に入れる値
+   */
+  public final void send(CommandSender sender, MessageTemplate template, Map<?, ?> values) {
+    if (sender != null) {
+      sender.sendMessage(getPrefix().append(template.render(values)));
+    }
+  }
+
   public final void cast(Object str) {
-    Bukkit.broadcast(getPrefix().append(Util.mm(str)));
+    BroadcastDispatcher.broadcast(getPrefix().append(Util.mm(str)));
   }
 
   public final void important(Object str) {
-    Util.important(Util.mm(getPrefix()).append(Util.mm(str)));
+    BroadcastDispatcher.important(getPrefix().append(Util.mm(str)));
   }
 
   public final Component getPrefix() {
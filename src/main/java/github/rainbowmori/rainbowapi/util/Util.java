@@ -1,5 +1,8 @@
 package github.rainbowmori.rainbowapi.util;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import java.time.Duration;
 import java.util.List;
 import java.util.Objects;
@@ -22,6 +25,13 @@ import org.jetbrains.annotations.NotNull;
 
 public class Util {
 
+  // これより長い文字列は使い回されることが少ないためキャッシュしない
+  private static final int MM_CACHE_MAX_LENGTH = 512;
+
+  // mm の文字列ごとの変換結果 (Component は変更できないため共有できる)
+  private static final Cache<String, Component> mmCache = CacheBuilder.newBuilder()
+      .maximumSize(4096).recordStats().build();
+
   private Util() {
   }
 
@@ -36,9 +46,48 @@ public class Util {
    * @return 変換物
    */
   public static Component mm(Object str) {
-    return str instanceof Component ? ((Component) str)
-        : MiniMessage.miniMessage().deserialize(String.valueOf(str))
-            .decoration(TextDecoration.ITALIC, false);
+    return mm(str, true);
+  }
+
+  /**
+   * Object を String に変換してから{@link Component}に変換します
+   * <p>
+   * 同じ文字列の変換結果はキャッシュされます プレイヤーの入力など、同じ文字列が使われることが少ない場合は cache を false にしてください
+   *
+   * @param str   変換対象
+   * @param cache 変換結果をキャッシュするか
+   * @return 変換物
+   */
+  public static Component mm(Object str, boolean cache) {
+    if (str instanceof Component) {
+      return (Component) str;
+    }
+    String string = String.valueOf(str);
+    if (!cache || string.length() > MM_CACHE_MAX_LENGTH) {
+      return MiniMessage.miniMessage().deserialize(string)
+          .decoration(TextDecoration.ITALIC, false);
+    }
+    Component component = mmCache.getIfPresent(string);
+    if (component == null) {
+      component = MiniMessage.miniMessage().deserialize(string)
+          .decoration(TextDecoration.ITALIC, false);
+      mmCache.put(string, component);
+    }
+    return component;
+  }
+
+  /**
+   * @return {@link #mm(Object)} のキャッシュのヒット数やミス数
+   */
+  public static CacheStats getMMCacheStats() {
+    return mmCache.stats();
+  }
+
+  /**
+   * {@link #mm(Object)} のキャッシュを空にします
+   */
+  public static void invalidateMMCache() {
+    mmCache.invalidateAll();
   }
 
   /**
@@ -192,24 +241,26 @@ public class Util {
 
   /**
    * BroadCast
+   * <p>
+   * Delivered from the main thread on a later tick once the {@link BroadcastDispatcher} task is started
    *
    * @param str message
+   * @see BroadcastDispatcher
    */
 
   public static void cast(Object str) {
-    Bukkit.broadcast(Util.mm(str));
+    BroadcastDispatcher.broadcast(Util.mm(str));
   }
 
   /**
    * send message to all op players
+   * <p>
+   * Delivered from the main thread on a later tick once the {@link BroadcastDispatcher} task is started
    *
    * @param str message
+   * @see BroadcastDispatcher
    */
   public static void important(Object str) {
-    Bukkit.getOnlinePlayers().forEach(player -> {
-      if (player.isOp()) {
-        player.sendMessage(mm(str));
-      }
-    });
+    BroadcastDispatcher.important(Util.mm(str));
   }
 }
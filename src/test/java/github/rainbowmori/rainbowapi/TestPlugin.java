@@ -0,0 +1,48 @@
+package github.rainbowmori.rainbowapi;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.util.logging.Logger;
+import org.bukkit.craftbukkit.v1_20_R3.TestServer;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Create fake plugins for the tests of the file APIs and the tasks.
+ */
+public final class TestPlugin {
+
+  private static final Logger LOGGER = Logger.getLogger("TestPlugin");
+
+  private TestPlugin() {
+  }
+
+  /**
+   * Create a plugin named "TestPlugin" (the other methods do nothing).
+   *
+   * @param dataFolder the folder of the files of the plugin
+   * @return the plugin
+   */
+  public static Plugin create(File dataFolder) {
+    return (Plugin) Proxy.newProxyInstance(TestPlugin.class.getClassLoader(),
+        new Class<?>[]{Plugin.class}, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "getName":
+              return "TestPlugin";
+            case "getDataFolder":
+              return dataFolder;
+            case "getLogger":
+              return LOGGER;
+            case "isEnabled":
+              return true;
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            case "toString":
+              return "TestPlugin(" + dataFolder + ")";
+            default:
+              return TestServer.noop(method.getReturnType());
+          }
+        });
+  }
+}
@@ -0,0 +1,305 @@
+package github.rainbowmori.rainbowapi.api;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import github.rainbowmori.rainbowapi.TestPlugin;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import org.bukkit.craftbukkit.v1_20_R3.TestServer;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BinaryAPITest {
+
+  @TempDir
+  Path folder;
+
+  @BeforeAll
+  static void installServer() {
+    TestServer.install();
+  }
+
+  @Test
+  void valuesAreKeptAfterReopening() {
+    BinaryAPI api = open();
+    api.put("a", bytes("1"));
+    api.put("b", ByteBuffer.wrap(bytes("2")));
+    api.put("a", bytes("3"));
+    assertTrue(api.remove("b"));
+    assertFalse(api.remove("missing"));
+    assertEquals("3", text(api.get("a")));
+    assertNull(api.get("b"));
+    api.close();
+
+    BinaryAPI reopened = open();
+    try {
+      assertEquals("3", text(reopened.getBytes("a")));
+      assertFalse(reopened.has("b"));
+      assertEquals(Set.of("a"), reopened.keys());
+      assertEquals(1, reopened.size());
+    } finally {
+      reopened.close();
+    }
+  }
+
+  @Test
+  void indexIsRebuiltFromTheLogWhenNotClosed() {
+    BinaryAPI crashed = open();
+    crashed.put("a", bytes("1"));
+    crashed.put("b", bytes("2"));
+    crashed.put("a", bytes("3"));
+    crashed.remove("b");
+
+    BinaryAPI reopened = open();
+    try {
+      assertEquals("3", text(reopened.getBytes("a")));
+      assertFalse(reopened.has("b"));
+      assertEquals(1, reopened.size());
+    } finally {
+      reopened.close();
+      crashed.close();
+    }
+  }
+
+  @Test
+  void compactionKeepsTheLatestValues() {
+    BinaryAPI api = open();
+    for (int i = 0; i < 100; i++) {
+      api.put("key" + i, bytes("old" + i));
+    }
+    for (int i = 0; i < 100; i++) {
+      if (i % 2 == 0) {
+        api.put("key" + i, bytes("new" + i));
+      } else {
+        api.remove("key" + i);
+      }
+    }
+    api.compact();
+    assertLatest(api, 100);
+    api.put("after", bytes("x"));
+    api.close();
+
+    BinaryAPI reopened = open();
+    try {
+      assertEquals("x", text(reopened.getBytes("after")));
+      assertTrue(reopened.remove("after"));
+      assertLatest(reopened, 100);
+    } finally {
+      reopened.close();
+    }
+  }
+
+  @Test
+  void interruptedCompactionIsFinishedWhenLoading() throws IOException {
+    // Few keys, so that the index never asks for a compaction before the test does
+    BinaryAPI api = open();
+    for (int i = 0; i < 40; i++) {
+      api.put("key" + i, bytes("old" + i));
+    }
+    for (int i = 0; i < 40; i++) {
+      if (i % 2 == 0) {
+        api.put("key" + i, bytes("new" + i));
+      } else {
+        api.remove("key" + i);
+      }
+    }
+    api.close();
+    Path file = folder.resolve("data.dat");
+    byte[] before = Files.readAllBytes(file);
+
+    BinaryAPI compacted = open();
+    compacted.compact();
+    compacted.close();
+    byte[] journal = Files.readAllBytes(file);
+    // Not closed cleanly: the index is rebuilt from the rewritten records
+    journal[15] = 0;
+    // The journal marks the file as being rewritten
+    journal[43] = 1;
+
+    // Stopped in the middle of rewriting the records from the journal
+    ByteBuffer header = ByteBuffer.wrap(journal);
+    int logStart = 64 + header.getInt(8) * 12;
+    System.arraycopy(journal, 0, before, 0, logStart + ((int) header.getLong(16) - logStart) / 2);
+    Files.write(file, before);
+    Path compactFile = folder.resolve("data.dat.compact");
+    Files.write(compactFile, journal);
+    BinaryAPI recovered = open();
+    try {
+      assertNull(recovered.getLoadError());
+      assertFalse(Files.exists(compactFile));
+      assertLatest(recovered, 40);
+    } finally {
+      recovered.close();
+    }
+  }
+
+  @Test
+  void compactionJournalIsIgnoredWhenTheRewriteDidNotStart() throws IOException {
+    BinaryAPI api = open();
+    for (int i = 0; i < 10; i++) {
+      api.put("key" + i, bytes("old" + i));
+    }
+    api.close();
+    Path file = folder.resolve("data.dat");
+    byte[] before = Files.readAllBytes(file);
+
+    BinaryAPI compacted = open();
+    compacted.remove("key0");
+    compacted.compact();
+    compacted.close();
+    byte[] journal = Files.readAllBytes(file);
+    journal[43] = 1;
+
+    // Stopped after writing the journal, while the file was still being appended to
+    Files.write(file, before);
+    Path compactFile = folder.resolve("data.dat.compact");
+    Files.write(compactFile, journal);
+    BinaryAPI appended = open();
+    appended.put("late", bytes("x"));
+    BinaryAPI recovered = open();
+    try {
+      assertNull(recovered.getLoadError());
+      assertFalse(Files.exists(compactFile));
+      assertEquals("x", text(recovered.getBytes("late")));
+      assertEquals("old0", text(recovered.getBytes("key0")));
+      assertEquals(11, recovered.size());
+    } finally {
+      recovered.close();
+      appended.close();
+    }
+  }
+
+  @Test
+  void valuesPutDuringCompactionAreKept() throws InterruptedException {
+    BinaryAPI api = open();
+    for (int i = 0; i < 1000; i++) {
+      api.put("key" + i, bytes("old" + i));
+    }
+    Thread writer = new Thread(() -> {
+      for (int i = 0; i < 1000; i++) {
+        api.put("key" + i, bytes("new" + i));
+        api.put("extra" + i, bytes("value" + i));
+      }
+    });
+    writer.start();
+    while (writer.isAlive()) {
+      api.compact();
+    }
+    writer.join();
+    api.close();
+
+    BinaryAPI reopened = open();
+    try {
+      assertEquals(2000, reopened.size());
+      for (int i = 0; i < 1000; i++) {
+        assertEquals("new" + i, text(reopened.getBytes("key" + i)));
+        assertEquals("value" + i, text(reopened.getBytes("extra" + i)));
+      }
+    } finally {
+      reopened.close();
+    }
+  }
+
+  @Test
+  void valuesAreNotChangedByCompaction() {
+    BinaryAPI api = open();
+    try {
+      api.put("a", bytes("1"));
+      ByteBuffer value = api.get("a");
+      api.put("a", bytes("2"));
+      api.compact();
+      assertEquals("1", text(value));
+    } finally {
+      api.close();
+    }
+  }
+
+  @Test
+  void removedValuesAreCountedOnce() throws IOException {
+    BinaryAPI api = open();
+    api.put("a", bytes("1"));
+    for (int i = 0; i < 10; i++) {
+      api.remove("a");
+      api.put("a", bytes("1"));
+    }
+    api.close();
+
+    // A live record is 12 + 1 + 1 bytes and a removed one is 12 + 1 bytes
+    ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(folder.resolve("data.dat")));
+    assertEquals(10 * (14 + 13), header.getLong(32));
+  }
+
+  @Test
+  void indexGrowsWithManyKeys() {
+    BinaryAPI api = open();
+    for (int i = 0; i < 5000; i++) {
+      api.put("key" + i, bytes("value" + i));
+    }
+    api.saveFileAsync().join();
+    api.close();
+
+    BinaryAPI reopened = open();
+    try {
+      assertEquals(5000, reopened.size());
+      Set<String> keys = new HashSet<>();
+      for (int i = 0; i < 5000; i++) {
+        keys.add("key" + i);
+        assertEquals("value" + i, text(reopened.getBytes("key" + i)));
+      }
+      assertEquals(keys, reopened.keys());
+    } finally {
+      reopened.close();
+    }
+  }
+
+  @Test
+  void changesCannotBeWatched() {
+    BinaryAPI api = open();
+    try {
+      assertThrows(UnsupportedOperationException.class, () -> api.watch(keys -> {
+      }));
+    } finally {
+      api.close();
+    }
+  }
+
+  private BinaryAPI open() {
+    return new BinaryAPI(TestPlugin.create(folder.toFile()), "data");
+  }
+
+  private static void assertLatest(BinaryAPI api, int keys) {
+    assertEquals(keys / 2, api.size());
+    for (int i = 0; i < keys; i++) {
+      if (i % 2 == 0) {
+        assertArrayEquals(bytes("new" + i), api.getBytes("key" + i));
+      } else {
+        assertNull(api.get("key" + i));
+      }
+    }
+  }
+
+  private static byte[] bytes(String text) {
+    return text.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String text(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    return text(bytes);
+  }
+
+  private static String text(byte[] bytes) {
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
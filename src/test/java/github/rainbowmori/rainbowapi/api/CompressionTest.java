@@ -0,0 +1,101 @@
+package github.rainbowmori.rainbowapi.api;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import github.rainbowmori.rainbowapi.api.FileAPI.DataWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import org.junit.jupiter.api.Test;
+
+class CompressionTest {
+
+  private static final byte[] DATA = "{\"key\":\"value\"}\n".repeat(1000)
+      .getBytes(StandardCharsets.UTF_8);
+
+  @Test
+  void everyCompressionRoundTrips() throws IOException {
+    for (Compression compression : Compression.values()) {
+      for (int level : new int[]{Deflater.DEFAULT_COMPRESSION, 0, 1, 9}) {
+        byte[] written = write(compression, level);
+        assertArrayEquals(DATA, read(compression, written));
+        if (compression != Compression.NONE && level != 0) {
+          assertTrue(written.length < DATA.length, compression + " " + level);
+        }
+      }
+    }
+  }
+
+  @Test
+  void compressedDataUsesTheStandardFormats() throws IOException {
+    assertArrayEquals(DATA, new GZIPInputStream(
+        new ByteArrayInputStream(write(Compression.GZIP, 9))).readAllBytes());
+    assertArrayEquals(DATA, new InflaterInputStream(
+        new ByteArrayInputStream(write(Compression.DEFLATE, 1))).readAllBytes());
+    assertArrayEquals(DATA, write(Compression.NONE, 9));
+  }
+
+  @Test
+  void compressDoesNotCloseTheOutputAndForwardsCommitted() throws IOException {
+    AtomicBoolean closed = new AtomicBoolean();
+    AtomicBoolean committed = new AtomicBoolean();
+    ByteArrayOutputStream output = new ByteArrayOutputStream() {
+      @Override
+      public void close() {
+        closed.set(true);
+      }
+    };
+    DataWriter writer = Compression.GZIP.compress(new DataWriter() {
+      @Override
+      public void write(OutputStream output) throws IOException {
+        output.write(DATA);
+      }
+
+      @Override
+      public void committed() {
+        committed.set(true);
+      }
+    }, Deflater.DEFAULT_COMPRESSION);
+    writer.write(output);
+    assertFalse(closed.get());
+    writer.committed();
+    assertTrue(committed.get());
+  }
+
+  @Test
+  void extensionsAreAppendedToTheFileExtension() {
+    assertEquals("", Compression.NONE.getExtension());
+    assertEquals(".gz", Compression.GZIP.getExtension());
+    assertEquals(".deflate", Compression.DEFLATE.getExtension());
+  }
+
+  @Test
+  void corruptedDataFailsToDecompress() {
+    byte[] corrupted = "not compressed".getBytes(StandardCharsets.UTF_8);
+    assertThrows(IOException.class, () -> read(Compression.GZIP, corrupted));
+    assertThrows(IOException.class, () -> read(Compression.DEFLATE, corrupted));
+  }
+
+  private static byte[] write(Compression compression, int level) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    compression.compress(out -> out.write(DATA), level).write(output);
+    return output.toByteArray();
+  }
+
+  private static byte[] read(Compression compression, byte[] data) throws IOException {
+    try (InputStream input = compression.decompress(new ByteArrayInputStream(data))) {
+      return input.readAllBytes();
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package github.rainbowmori.rainbowapi.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.jupiter.api.Test;
+
+class ConfigViewTest {
+
+  private static final String YAML = String.join("\n",
+      "game:",
+      "  max-players: 20",
+      "  mode: insane",
+      "prefix: '[Game]'",
+      "database:",
+      "  host: localhost",
+      "  port: 3306",
+      "worlds: [world, nether]",
+      "ports: [1, 2]",
+      "");
+
+  enum Mode {
+    EASY, INSANE
+  }
+
+  record Database(String host, int port) {
+
+  }
+
+  record Settings(@ConfigPath("game.max-players") int maxPlayers, String prefix,
+                  @ConfigPath("game.mode") Mode mode, Database database, List<String> worlds,
+                  List<Long> ports) {
+
+  }
+
+  record Missing(int count, boolean enabled, String name, Database other) {
+
+  }
+
+  record Raw(ConfigurationSection database, @ConfigPath("database") Map<String, Object> values) {
+
+  }
+
+  record Wrong(List<String> prefix) {
+
+  }
+
+  interface Messages {
+
+    String prefix();
+
+    @ConfigPath("database.port")
+    long port();
+
+    Database database();
+
+    default String format(String message) {
+      return prefix() + " " + message;
+    }
+  }
+
+  @Test
+  void recordsAreBound() throws InvalidConfigurationException {
+    Settings settings = ConfigView.bind(Settings.class, yaml());
+    assertEquals(new Settings(20, "[Game]", Mode.INSANE, new Database("localhost", 3306),
+        List.of("world", "nether"), List.of(1L, 2L)), settings);
+  }
+
+  @Test
+  void missingValuesAreEmpty() throws InvalidConfigurationException {
+    assertEquals(new Missing(0, false, null, new Database(null, 0)),
+        ConfigView.bind(Missing.class, yaml()));
+  }
+
+  @Test
+  void interfacesAreBound() throws InvalidConfigurationException {
+    Messages messages = ConfigView.bind(Messages.class, yaml());
+    assertEquals("[Game]", messages.prefix());
+    assertEquals(3306L, messages.port());
+    assertEquals(new Database("localhost", 3306), messages.database());
+    assertEquals("[Game] hello", messages.format("hello"));
+  }
+
+  @Test
+  void librarySectionsAreNotBound() throws InvalidConfigurationException {
+    YamlConfiguration yaml = yaml();
+    Raw raw = ConfigView.bind(Raw.class, yaml);
+    assertSame(yaml.getConfigurationSection("database"), raw.database());
+    assertEquals(Map.of("host", "localhost", "port", 3306), raw.values());
+  }
+
+  @Test
+  void enumsDoNotDependOnTheDefaultLocale() throws InvalidConfigurationException {
+    Locale locale = Locale.getDefault();
+    Locale.setDefault(new Locale("tr", "TR"));
+    try {
+      assertEquals(Mode.INSANE, ConfigView.bind(Settings.class, yaml()).mode());
+    } finally {
+      Locale.setDefault(locale);
+    }
+  }
+
+  @Test
+  void wrongTypesAreRejected() throws InvalidConfigurationException {
+    YamlConfiguration yaml = yaml();
+    assertThrows(IllegalArgumentException.class, () -> ConfigView.bind(Wrong.class, yaml));
+    assertThrows(IllegalArgumentException.class, () -> ConfigView.bind(String.class, yaml));
+    assertNull(ConfigView.bind(Missing.class, yaml).name());
+  }
+
+  private static YamlConfiguration yaml() throws InvalidConfigurationException {
+    YamlConfiguration yaml = new YamlConfiguration();
+    yaml.loadFromString(YAML);
+    return yaml;
+  }
+}
@@ -0,0 +1,180 @@
+package github.rainbowmori.rainbowapi.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import github.rainbowmori.rainbowapi.TestPlugin;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.bukkit.craftbukkit.v1_20_R3.TestServer;
+import org.bukkit.plugin.Plugin;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileAPITest {
+
+  @TempDir
+  Path folder;
+
+  @BeforeAll
+  static void installServer() {
+    TestServer.install();
+  }
+
+  @Test
+  void writeAtomicallyReplacesTheFileAndKeepsTheBackup() throws IOException {
+    File file = folder.resolve("data.txt").toFile();
+    FileAPI.writeAtomically(file, output -> output.write(bytes("one")), false, true);
+    assertEquals("one", read(file.toPath()));
+    assertFalse(Files.exists(backup(file)));
+
+    FileAPI.writeAtomically(file, output -> output.write(bytes("two")), true, true);
+    assertEquals("two", read(file.toPath()));
+    assertEquals("one", read(backup(file)));
+
+    FileAPI.writeAtomically(file, output -> output.write(bytes("three")), false, false);
+    assertEquals("three", read(file.toPath()));
+    assertEquals("one", read(backup(file)));
+    assertEquals(List.of("data.txt", "data.txt.bak"), files());
+  }
+
+  @Test
+  void failedWriteKeepsTheFile() throws IOException {
+    File file = folder.resolve("data.txt").toFile();
+    FileAPI.writeAtomically(file, output -> output.write(bytes("kept")), false, true);
+    assertThrows(IOException.class, () -> FileAPI.writeAtomically(file, output -> {
+      output.write(bytes("half"));
+      throw new IOException("test");
+    }, false, true));
+    assertEquals("kept", read(file.toPath()));
+    assertEquals(List.of("data.txt"), files());
+  }
+
+  @Test
+  void corruptedFileIsLoadedFromTheBackup() throws IOException {
+    Files.writeString(folder.resolve("settings.properties"), "a=\\uZZZZ");
+    Files.writeString(folder.resolve("settings.properties.bak"), "a=1");
+    PropertyAPI properties = new PropertyAPI(plugin(), "settings");
+    assertEquals("1", properties.getProperty("a"));
+    assertNull(properties.getLoadError());
+
+    // The next save must not replace the good backup with the corrupted file
+    properties.setProperty("b", "2");
+    assertEquals("a=1", read(folder.resolve("settings.properties.bak")));
+    PropertyAPI reloaded = new PropertyAPI(plugin(), "settings");
+    assertEquals("1", reloaded.getProperty("a"));
+    assertEquals("2", reloaded.getProperty("b"));
+  }
+
+  @Test
+  void emptyFileIsLoadedFromANonEmptyBackup() throws IOException {
+    Files.writeString(folder.resolve("settings.properties"), "");
+    Files.writeString(folder.resolve("settings.properties.bak"), "a=1");
+    assertEquals("1", new PropertyAPI(plugin(), "settings").getProperty("a"));
+  }
+
+  @Test
+  void newFileIsEmptyWithoutError() {
+    PropertyAPI properties = new PropertyAPI(plugin(), "settings");
+    assertNull(properties.getProperty("a"));
+    assertNull(properties.getLoadError());
+    assertTrue(Files.exists(folder.resolve("settings.properties")));
+  }
+
+  @Test
+  void loadErrorIsKeptWhenTheBackupFailsToo() throws IOException {
+    Files.writeString(folder.resolve("settings.properties"), "a=\\uZZZZ");
+    Files.writeString(folder.resolve("settings.properties.bak"), "a=\\uYYYY");
+    PropertyAPI properties = new PropertyAPI(plugin(), "settings");
+    assertNull(properties.getProperty("a"));
+    Throwable error = properties.getLoadError();
+    assertNotNull(error);
+    assertEquals(1, error.getSuppressed().length);
+  }
+
+  @Test
+  void subclassesOverridingSaveFileAreStillSaved() throws IOException {
+    LegacyFile legacy = new LegacyFile(plugin());
+    legacy.data = "a";
+    legacy.saveFile();
+    assertEquals("a", read(legacy.file.toPath()));
+    legacy.data = "b";
+    legacy.saveFileAsync().join();
+    assertEquals("b", read(legacy.file.toPath()));
+
+    // Neither createWriter nor saveFile is overridden
+    FileAPI<String> unsaved = new FileAPI<>(plugin(), "unsaved") {
+      @Override
+      protected String getExtension() {
+        return ".txt";
+      }
+
+      @Override
+      public void loadData() {
+        data = "";
+      }
+    };
+    assertThrows(UnsupportedOperationException.class, unsaved::saveFile);
+  }
+
+  private Plugin plugin() {
+    return TestPlugin.create(folder.toFile());
+  }
+
+  private List<String> files() throws IOException {
+    try (Stream<Path> files = Files.list(folder)) {
+      return files.map(path -> path.getFileName().toString()).sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  private static Path backup(File file) {
+    return file.toPath().resolveSibling(file.getName() + ".bak");
+  }
+
+  private static byte[] bytes(String text) {
+    return text.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String read(Path path) throws IOException {
+    return Files.readString(path);
+  }
+
+  // A subclass written before createWriter, saving the data by itself
+  private static class LegacyFile extends FileAPI<String> {
+
+    LegacyFile(Plugin plugin) {
+      super(plugin, "legacy");
+    }
+
+    @Override
+    protected String getExtension() {
+      return ".txt";
+    }
+
+    @Override
+    public void loadData() {
+      data = "";
+    }
+
+    @Override
+    public void saveFile() {
+      try {
+        Files.writeString(file.toPath(), data);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+}
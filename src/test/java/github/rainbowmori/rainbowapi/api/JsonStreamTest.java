@@ -0,0 +1,136 @@
+package github.rainbowmori.rainbowapi.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSyntaxException;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JsonStreamTest {
+
+  private static final String JSON = "{\"version\":1,\"data\":{\"players\":{"
+      + "\"a\":{\"coins\":1.50},\"b\":[1,2],\"c\":null},\"other\":true}}";
+
+  @TempDir
+  Path folder;
+
+  @Test
+  void readerReadsTheEntriesAtThePath() throws IOException {
+    try (JsonStreamReader reader = reader(JSON, List.of("data", "players"))) {
+      assertTrue(reader.isFound());
+      List<Map.Entry<String, JsonElement>> entries = new ArrayList<>();
+      reader.forEachRemaining(entries::add);
+      assertEquals(List.of(
+          Map.entry("a", JsonParser.parseString("{\"coins\":1.50}")),
+          Map.entry("b", JsonParser.parseString("[1,2]")),
+          Map.entry("c", JsonParser.parseString("null"))), entries);
+    }
+  }
+
+  @Test
+  void readerCanSkipValues() throws IOException {
+    try (JsonStreamReader reader = reader(JSON, List.of("data", "players"))) {
+      assertEquals("a", reader.nextKey());
+      reader.skipValue();
+      assertEquals("b", reader.nextKey());
+      assertEquals(JsonParser.parseString("[1,2]"), reader.nextValue());
+    }
+  }
+
+  @Test
+  void readerFindsNothingForMissingPathsAndEmptySources() throws IOException {
+    try (JsonStreamReader reader = reader(JSON, List.of("data", "missing"))) {
+      assertFalse(reader.isFound());
+      assertFalse(reader.hasNext());
+    }
+    try (JsonStreamReader reader = reader(JSON, List.of("version"))) {
+      assertFalse(reader.isFound());
+    }
+    try (JsonStreamReader reader = reader("", List.of())) {
+      assertFalse(reader.isFound());
+      assertFalse(reader.hasNext());
+    }
+  }
+
+  @Test
+  void writerReplacesRemovesAndAppendsAtThePath() throws IOException {
+    String written = transfer(JSON, new JsonStreamWriter(List.of("data", "players"), new Gson())
+        .put("a", Map.of("coins", 2))
+        .remove("b")
+        .put("d", "new"));
+    assertEquals(JsonParser.parseString("{\"version\":1,\"data\":{\"players\":{"
+        + "\"a\":{\"coins\":2},\"c\":null,\"d\":\"new\"},\"other\":true}}"),
+        JsonParser.parseString(written));
+  }
+
+  @Test
+  void writerCopiesTheOtherValuesAsWritten() throws IOException {
+    String written = transfer(JSON, new JsonStreamWriter(List.of("data", "players"), new Gson())
+        .remove("b"));
+    assertTrue(written.contains("1.50"), written);
+  }
+
+  @Test
+  void writerCreatesTheMissingPath() throws IOException {
+    Gson gson = new Gson();
+    assertEquals(JsonParser.parseString("{\"data\":{\"players\":{\"a\":1}}}"),
+        JsonParser.parseString(transfer(null,
+            new JsonStreamWriter(List.of("data", "players"), gson).put("a", 1))));
+    assertEquals(JsonParser.parseString("{\"version\":{\"a\":1},\"data\":{\"x\":{}}}"),
+        JsonParser.parseString(transfer("{\"version\":3,\"data\":{\"x\":{}}}",
+            new JsonStreamWriter(List.of("version"), gson).put("a", 1))));
+    assertThrows(JsonSyntaxException.class,
+        () -> transfer("[1]", new JsonStreamWriter(List.of(), gson).put("a", 1)));
+  }
+
+  @Test
+  void writeToChangesTheFile() throws IOException {
+    File file = folder.resolve("data.json").toFile();
+    new JsonStreamWriter(List.of(), new Gson()).put("a", 1).writeTo(file);
+    new JsonStreamWriter(List.of(), new Gson()).put("b", new JsonPrimitive("x")).writeTo(file);
+    assertEquals(JsonParser.parseString("{\"a\":1,\"b\":\"x\"}"),
+        JsonParser.parseString(Files.readString(file.toPath())));
+    try (JsonStreamReader reader = JsonStreamReader.open(file, List.of())) {
+      assertEquals("a", reader.nextKey());
+    }
+  }
+
+  @Test
+  void filesAreReadAndWrittenInUtf8() throws IOException {
+    File file = folder.resolve("data.json").toFile();
+    new JsonStreamWriter(List.of(), new Gson()).put("a", "日本語").writeTo(file);
+    new JsonStreamWriter(List.of(), new Gson()).put("b", "é").writeTo(file);
+    assertEquals(JsonParser.parseString("{\"a\":\"日本語\",\"b\":\"é\"}"),
+        JsonParser.parseString(Files.readString(file.toPath())));
+    try (JsonStreamReader reader = JsonStreamReader.open(file, List.of())) {
+      assertEquals("a", reader.nextKey());
+      assertEquals(new JsonPrimitive("日本語"), reader.nextValue());
+    }
+  }
+
+  private static JsonStreamReader reader(String json, List<Object> path) throws IOException {
+    return new JsonStreamReader(new StringReader(json), path);
+  }
+
+  private static String transfer(String source, JsonStreamWriter writer) throws IOException {
+    StringWriter target = new StringWriter();
+    writer.transfer(source == null ? null : new StringReader(source), target);
+    return target.toString();
+  }
+}
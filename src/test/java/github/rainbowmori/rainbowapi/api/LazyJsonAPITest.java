@@ -0,0 +1,127 @@
+package github.rainbowmori.rainbowapi.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.JsonParser;
+import github.rainbowmori.rainbowapi.TestPlugin;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import org.bukkit.craftbukkit.v1_20_R3.TestServer;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LazyJsonAPITest {
+
+  private static final String JSON = "{\"first\": \"short\", \"a\": {\"x\": 1},\n"
+      + "  \"b\": [1, 2], \"c\": \"text\"}";
+
+  @TempDir
+  Path folder;
+
+  @BeforeAll
+  static void installServer() {
+    TestServer.install();
+  }
+
+  @Test
+  void keysAreIndexedWithoutLoadingTheValues() throws IOException {
+    LazyJsonAPI api = open(JSON);
+    try {
+      assertEquals(List.of("first", "a", "b", "c"), List.copyOf(api.keys()));
+      assertTrue(api.has("b"));
+      assertFalse(api.has("missing"));
+      assertEquals(JsonParser.parseString("{\"x\":1}"), api.get("a"));
+      assertNull(api.get("missing"));
+    } finally {
+      api.close();
+    }
+  }
+
+  @Test
+  void untouchedValuesAreCopiedAsWritten() throws IOException {
+    LazyJsonAPI api = open(JSON);
+    try {
+      api.set("c", "changed");
+      api.saveFile();
+      String saved = read();
+      assertTrue(saved.contains("[1, 2]"), saved);
+      assertEquals(JsonParser.parseString("{\"first\":\"short\",\"a\":{\"x\":1},\"b\":[1,2],"
+          + "\"c\":\"changed\"}"), JsonParser.parseString(saved));
+    } finally {
+      api.close();
+    }
+  }
+
+  @Test
+  void indexIsRewrittenAfterSave() throws IOException {
+    LazyJsonAPI api = open(JSON);
+    try {
+      // Move the following values in the file before they are loaded
+      api.set("first", "a much longer value than before");
+      api.saveFile();
+      assertEquals(JsonParser.parseString("{\"x\":1}"), api.get("a"));
+
+      api.set("first", 1);
+      api.saveFileAsync().join();
+      api.set("added", true);
+      api.saveFile();
+      assertEquals(JsonParser.parseString("[1,2]"), api.get("b"));
+      assertEquals(JsonParser.parseString("\"text\""), api.get("c"));
+    } finally {
+      api.close();
+    }
+
+    LazyJsonAPI reloaded = new LazyJsonAPI(TestPlugin.create(folder.toFile()), "data");
+    try {
+      assertEquals(List.of("first", "a", "b", "c", "added"), List.copyOf(reloaded.keys()));
+      assertEquals(JsonParser.parseString("1"), reloaded.get("first"));
+      assertEquals(JsonParser.parseString("true"), reloaded.get("added"));
+    } finally {
+      reloaded.close();
+    }
+  }
+
+  @Test
+  void removedKeysAreNotSaved() throws IOException {
+    LazyJsonAPI api = open(JSON);
+    try {
+      assertTrue(api.remove("b"));
+      assertFalse(api.remove("b"));
+      assertFalse(api.has("b"));
+      assertEquals(Set.of("first", "a", "c"), api.keys());
+      api.saveFile();
+      assertEquals(JsonParser.parseString("{\"first\":\"short\",\"a\":{\"x\":1},\"c\":\"text\"}"),
+          JsonParser.parseString(read()));
+    } finally {
+      api.close();
+    }
+  }
+
+  @Test
+  void unreadableFileIsEmptyWithLoadError() throws IOException {
+    LazyJsonAPI api = open("{\"a\": [1, 2");
+    try {
+      assertNotNull(api.getLoadError());
+      assertTrue(api.keys().isEmpty());
+    } finally {
+      api.close();
+    }
+  }
+
+  private LazyJsonAPI open(String json) throws IOException {
+    Files.writeString(folder.resolve("data.json"), json);
+    return new LazyJsonAPI(TestPlugin.create(folder.toFile()), "data");
+  }
+
+  private String read() throws IOException {
+    return Files.readString(folder.resolve("data.json"));
+  }
+}
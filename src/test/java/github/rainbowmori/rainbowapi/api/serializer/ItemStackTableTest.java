@@ -0,0 +1,168 @@
+package github.rainbowmori.rainbowapi.api.serializer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.bukkit.Material;
+import org.bukkit.UnsafeValues;
+import org.bukkit.craftbukkit.v1_20_R3.TestServer;
+import org.bukkit.inventory.ItemStack;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ItemStackTableTest {
+
+  private static final AtomicInteger DECODES = new AtomicInteger();
+
+  @TempDir
+  Path folder;
+
+  @BeforeAll
+  static void installServer() {
+    TestServer.install();
+    // The items are serialized as "TYPE:amount"
+    UnsafeValues unsafe = (UnsafeValues) Proxy.newProxyInstance(
+        ItemStackTableTest.class.getClassLoader(), new Class<?>[]{UnsafeValues.class},
+        (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "serializeItem":
+              ItemStack item = (ItemStack) args[0];
+              return (item.getType().name() + ":" + item.getAmount())
+                  .getBytes(StandardCharsets.UTF_8);
+            case "deserializeItem":
+              DECODES.incrementAndGet();
+              String[] parts = new String((byte[]) args[0], StandardCharsets.UTF_8).split(":");
+              return new ItemStack(Material.valueOf(parts[0]), Integer.parseInt(parts[1]));
+            default:
+              return TestServer.noop(method.getReturnType());
+          }
+        });
+    TestServer.handle("getUnsafe", args -> unsafe);
+  }
+
+  @AfterAll
+  static void uninstallUnsafe() {
+    TestServer.unhandle("getUnsafe");
+  }
+
+  @Test
+  void equalItemsShareTheirIndex() {
+    ItemStackTable table = new ItemStackTable();
+    assertEquals(0, table.add(item(Material.STONE, 1)));
+    assertEquals(0, table.add(item(Material.STONE, 1)));
+    assertEquals(1, table.add(item(Material.DIRT, 1)));
+    assertEquals(2, table.add(item(Material.STONE, 2)));
+    assertEquals(3, table.size());
+  }
+
+  @Test
+  void savedTableIsLoadedAndDecodedOnce() throws IOException {
+    File file = file();
+    ItemStackTable table = new ItemStackTable();
+    table.add(item(Material.STONE, 1));
+    table.add(item(Material.DIRT, 64));
+    table.save(file);
+
+    ItemStackTable loaded = ItemStackTable.load(file);
+    assertEquals(2, loaded.size());
+    int decodes = DECODES.get();
+    assertItem(Material.DIRT, 64, loaded.get(1));
+    ItemStack first = loaded.get(1);
+    ItemStack second = loaded.get(1);
+    assertEquals(decodes + 1, DECODES.get());
+    assertNotSame(first, second);
+    first.setAmount(1);
+    assertItem(Material.DIRT, 64, loaded.get(1));
+    assertEquals(1, loaded.add(item(Material.DIRT, 64)));
+  }
+
+  @Test
+  void savingToTheLoadedFileAppendsTheNewItems() throws IOException {
+    File file = file();
+    ItemStackTable table = new ItemStackTable();
+    table.add(item(Material.STONE, 1));
+    table.save(file);
+
+    ItemStackTable loaded = ItemStackTable.load(file);
+    long length = file.length();
+    loaded.add(item(Material.DIAMOND, 3));
+    loaded.save(file);
+    assertEquals(length + 4 + "DIAMOND:3".length(), file.length());
+    loaded.save(file);
+    assertEquals(length + 4 + "DIAMOND:3".length(), file.length());
+    assertItem(Material.STONE, 1, loaded.get(0));
+
+    ItemStackTable reloaded = ItemStackTable.load(file);
+    assertEquals(2, reloaded.size());
+    assertItem(Material.STONE, 1, reloaded.get(0));
+    assertItem(Material.DIAMOND, 3, reloaded.get(1));
+  }
+
+  @Test
+  void fileChangedByAnotherTableIsRewritten() throws IOException {
+    File file = file();
+    ItemStackTable table = new ItemStackTable();
+    table.add(item(Material.STONE, 1));
+    table.save(file);
+    ItemStackTable loaded = ItemStackTable.load(file);
+
+    ItemStackTable other = new ItemStackTable();
+    other.add(item(Material.DIRT, 1));
+    other.add(item(Material.DIRT, 2));
+    other.save(file);
+
+    loaded.add(item(Material.DIAMOND, 1));
+    loaded.save(file);
+    ItemStackTable reloaded = ItemStackTable.load(file);
+    assertEquals(2, reloaded.size());
+    assertItem(Material.STONE, 1, reloaded.get(0));
+    assertItem(Material.DIAMOND, 1, reloaded.get(1));
+  }
+
+  @Test
+  void adapterWritesTheIndexes() {
+    ItemStackTable table = new ItemStackTable();
+    Gson gson = new GsonBuilder().registerTypeAdapter(ItemStack.class, table.adapter()).create();
+    ItemStack stone = item(Material.STONE, 1);
+    assertEquals("[0,1,0,null]",
+        gson.toJson(new ItemStack[]{stone, item(Material.DIRT, 1), stone, null}));
+    ItemStack[] read = gson.fromJson("[1,0]", ItemStack[].class);
+    assertItem(Material.DIRT, 1, read[0]);
+    assertItem(Material.STONE, 1, read[1]);
+    assertThrows(JsonParseException.class, () -> gson.fromJson("[2]", ItemStack[].class));
+  }
+
+  @Test
+  void otherFilesAreNotLoaded() throws IOException {
+    File file = file();
+    assertEquals(0, ItemStackTable.load(file).size());
+    Files.writeString(file.toPath(), "not an item table");
+    assertThrows(IOException.class, () -> ItemStackTable.load(file));
+  }
+
+  private File file() {
+    return folder.resolve("items.bin").toFile();
+  }
+
+  private static ItemStack item(Material type, int amount) {
+    return new ItemStack(type, amount);
+  }
+
+  private static void assertItem(Material type, int amount, ItemStack item) {
+    assertEquals(type, item.getType());
+    assertEquals(amount, item.getAmount());
+  }
+}
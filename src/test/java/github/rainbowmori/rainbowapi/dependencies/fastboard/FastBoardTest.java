@@ -0,0 +1,298 @@
+package github.rainbowmori.rainbowapi.dependencies.fastboard;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import net.kyori.adventure.text.Component;
+import net.minecraft.network.protocol.Packet;
+import net.minecraft.network.protocol.game.ClientboundResetScorePacket;
+import net.minecraft.network.protocol.game.PacketPlayOutScoreboardScore;
+import net.minecraft.network.protocol.game.PacketPlayOutScoreboardTeam;
+import net.minecraft.server.level.EntityPlayer;
+import org.bukkit.craftbukkit.v1_20_R3.TestServer;
+import org.bukkit.craftbukkit.v1_20_R3.entity.CraftPlayer;
+import org.bukkit.entity.Player;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class FastBoardTest {
+
+  @BeforeAll
+  static void installServer() {
+    TestServer.install();
+  }
+
+  @Test
+  void updatesOnlySendTheChangedLines() {
+    Player viewer = player();
+    FastBoard board = new FastBoard(viewer);
+    board.updateLines(text("a"), text("b"), text("c"));
+    assertEquals(List.of("a", "b", "c"), lines(viewer, board));
+
+    int sent = packets(viewer).size();
+    board.updateLine(1, text("x"));
+    assertEquals(List.of("a", "x", "c"), lines(viewer, board));
+    assertEquals(sent + 1, packets(viewer).size());
+  }
+
+  @Test
+  void limitSendPacketOnlySendsToTheTargets() {
+    Player target = player();
+    Player other = player();
+    FastBoard board = new FastBoard(Arrays.asList(target, other));
+    board.updateLines(text("a"), text("b"));
+
+    int otherSent = packets(other).size();
+    board.limitSendPacket(b -> {
+      b.updateLine(1, text("only"));
+      b.updateLine(2, text("new"));
+    }, target);
+    assertEquals(List.of("a", "only", "new"), lines(target, board));
+    assertEquals(otherSent, packets(other).size());
+
+    // The other viewer gets the changes with the next update
+    board.updateLine(0, text("z"));
+    assertEquals(List.of("z", "only", "new"), lines(target, board));
+    assertEquals(List.of("z", "only", "new"), lines(other, board));
+  }
+
+  @Test
+  void concurrentUpdatesAreAllSent() throws InterruptedException {
+    Player first = player();
+    Player second = player();
+    FastBoard board = new FastBoard(Arrays.asList(first, second));
+
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      int id = t;
+      threads.add(new Thread(() -> {
+        Random random = new Random(id);
+        for (int i = 0; i < 2000; i++) {
+          int line = random.nextInt(8);
+          switch (random.nextInt(4)) {
+            case 0:
+              board.removeLine(line);
+              break;
+            case 1:
+              board.batchUpdate(b -> {
+                b.updateTitle(text("title " + id));
+                b.updateLine(0, text("batch " + id));
+              });
+              break;
+            default:
+              board.updateLine(line, text(id + ":" + i));
+              break;
+          }
+        }
+      }));
+    }
+    Player late = player();
+    threads.add(new Thread(() -> {
+      for (int i = 0; i < 200; i++) {
+        board.addViewer(late);
+        board.removeViewer(late);
+      }
+      board.addViewer(late);
+    }));
+    board.show();
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    List<String> expected = new ArrayList<>();
+    board.getLines().forEach(line -> expected.add(legacy(line)));
+    assertEquals(expected, lines(first, board));
+    assertEquals(expected, lines(second, board));
+    assertEquals(expected, lines(late, board));
+  }
+
+  @Test
+  void templateSendsTheViewerLines() {
+    Player first = player();
+    Player second = player();
+    Map<Player, Integer> kills = new ConcurrentHashMap<>(Map.of(first, 1, second, 2));
+    FastBoardTemplate board = new FastBoardTemplate(Arrays.asList(first, second));
+    board.updateLine(0, text("map"));
+    board.updateLine(1, viewer -> text("kills " + kills.get(viewer)));
+    assertEquals(List.of("map", "kills 1"), lines(first, board));
+    assertEquals(List.of("map", "kills 2"), lines(second, board));
+
+    int firstSent = packets(first).size();
+    kills.put(second, 5);
+    board.update();
+    assertEquals(firstSent, packets(first).size());
+    assertEquals(List.of("map", "kills 5"), lines(second, board));
+
+    board.updateLine(2, viewer -> text("id " + kills.get(viewer)));
+    board.removeLine(0);
+    assertEquals(List.of("kills 1", "id 1"), lines(first, board));
+    assertEquals(List.of("kills 5", "id 5"), lines(second, board));
+
+    board.updateLine(0, text("static"));
+    assertEquals(List.of("static", "id 5"), lines(second, board));
+  }
+
+  @Test
+  void actionsQueuedWhileDrainingKeepTheirOrder() throws InterruptedException {
+    Player viewer = player();
+    FastBoardTemplate board = new FastBoardTemplate(viewer);
+    CountDownLatch draining = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicBoolean hold = new AtomicBoolean();
+    board.updateLines(text("a"), text("b"), text("c"));
+    board.updateLine(1, p -> {
+      if (hold.compareAndSet(true, false)) {
+        draining.countDown();
+        await(release);
+      }
+      return text("slow");
+    });
+
+    // Hold the sending thread in the viewer line while other updates are queued
+    hold.set(true);
+    Thread update = new Thread(board::update);
+    update.start();
+    assertTrue(draining.await(5, TimeUnit.SECONDS));
+    board.removeLine(0);
+    release.countDown();
+    update.join();
+
+    assertEquals(List.of("slow", "c"), lines(viewer, board));
+  }
+
+  @Test
+  void deleteWhileDrainingRefusesTheUpdatesAtOnce() throws InterruptedException {
+    Player viewer = player();
+    FastBoardTemplate board = new FastBoardTemplate(viewer);
+    CountDownLatch draining = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicBoolean hold = new AtomicBoolean();
+    board.updateLines(text("a"));
+    board.updateLine(0, p -> {
+      if (hold.compareAndSet(true, false)) {
+        draining.countDown();
+        await(release);
+      }
+      return text("slow");
+    });
+
+    hold.set(true);
+    Thread update = new Thread(board::update);
+    update.start();
+    assertTrue(draining.await(5, TimeUnit.SECONDS));
+    board.delete();
+    assertTrue(board.isDeleted());
+    assertThrows(IllegalStateException.class, () -> board.updateLines(text("b")));
+    assertThrows(IllegalStateException.class, () -> board.updateTitle(text("b")));
+    assertThrows(IllegalStateException.class, board::delete);
+    release.countDown();
+    update.join();
+  }
+
+  @Test
+  void failingActionDoesNotBlockTheOthers() {
+    Player viewer = player();
+    FastBoardTemplate board = new FastBoardTemplate(viewer);
+    board.updateLine(0, p -> {
+      throw new IllegalStateException("test");
+    });
+    board.updateLine(1, text("after"));
+    assertEquals("after", lines(viewer, board).get(1));
+  }
+
+  private static Component text(String text) {
+    return Component.text(text);
+  }
+
+  private static String legacy(Component component) {
+    return new FastBoard(Collections.emptyList()).serializeLine(component);
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static Player player() {
+    EntityPlayer handle = new EntityPlayer();
+    UUID uuid = UUID.randomUUID();
+    return (Player) Proxy.newProxyInstance(FastBoardTest.class.getClassLoader(),
+        new Class<?>[]{CraftPlayer.class}, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "getHandle":
+              return handle;
+            case "getUniqueId":
+              return uuid;
+            case "isOnline":
+              return true;
+            case "hashCode":
+              return uuid.hashCode();
+            case "equals":
+              return proxy == args[0];
+            case "toString":
+              return "Player(" + uuid + ")";
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+  }
+
+  private static List<Packet> packets(Player player) {
+    return ((CraftPlayer) player).getHandle().connection.getPackets();
+  }
+
+  // Lines shown to the player, from the top, rebuilt from the packets received
+  private static List<String> lines(Player player, FastBoardBase<?> board) {
+    Map<Integer, String> teams = new TreeMap<>(Collections.reverseOrder());
+    Map<String, Boolean> scores = new TreeMap<>();
+    String prefix = board.getId() + ':';
+    for (Packet packet : packets(player)) {
+      if (packet instanceof PacketPlayOutScoreboardTeam) {
+        PacketPlayOutScoreboardTeam team = (PacketPlayOutScoreboardTeam) packet;
+        if (!team.name.startsWith(prefix)) {
+          continue;
+        }
+        int score = Integer.parseInt(team.name.substring(prefix.length()));
+        if (team.method == FastBoardBase.TeamMode.REMOVE.ordinal()) {
+          teams.remove(score);
+        } else {
+          teams.put(score, team.parameters
+              .map(parameters -> parameters.playerPrefix == null ? "" : parameters.playerPrefix.getText())
+              .orElse(""));
+        }
+      } else if (packet instanceof PacketPlayOutScoreboardScore) {
+        PacketPlayOutScoreboardScore score = (PacketPlayOutScoreboardScore) packet;
+        if (score.objectiveName.equals(board.getId())) {
+          scores.put(score.owner, true);
+        }
+      } else if (packet instanceof ClientboundResetScorePacket) {
+        ClientboundResetScorePacket reset = (ClientboundResetScorePacket) packet;
+        if (reset.objectiveName.equals(board.getId())) {
+          scores.remove(reset.owner);
+        }
+      }
+    }
+    assertEquals(teams.size(), scores.size(), "teams and scores");
+    return new ArrayList<>(teams.values());
+  }
+}
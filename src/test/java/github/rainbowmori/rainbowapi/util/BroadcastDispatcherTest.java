@@ -0,0 +1,236 @@
+package github.rainbowmori.rainbowapi.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import github.rainbowmori.rainbowapi.TestPlugin;
+import github.rainbowmori.rainbowapi.util.BroadcastDispatcher.Target;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import net.kyori.adventure.text.Component;
+import org.bukkit.craftbukkit.v1_20_R3.TestServer;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class BroadcastDispatcherTest {
+
+  private static final List<Component> BROADCASTS = new CopyOnWriteArrayList<>();
+  private static final List<Component> OPERATOR = new CopyOnWriteArrayList<>();
+  private static final List<Component> PLAYER = new CopyOnWriteArrayList<>();
+  private static final AtomicBoolean CANCELLED = new AtomicBoolean();
+  private static volatile Runnable tick;
+
+  @BeforeAll
+  static void installServer() {
+    TestServer.install();
+    TestServer.handle("getScheduler", args -> proxy(BukkitScheduler.class, (method, arguments) -> {
+      if (method.equals("runTaskTimer")) {
+        tick = (Runnable) arguments[1];
+        CANCELLED.set(false);
+        return proxy(BukkitTask.class, (name, ignored) -> {
+          if (name.equals("cancel")) {
+            CANCELLED.set(true);
+          }
+          return null;
+        });
+      }
+      throw new UnsupportedOperationException(method);
+    }));
+    TestServer.handle("broadcast", args -> {
+      BROADCASTS.add((Component) args[0]);
+      return 1;
+    });
+    List<Player> players = List.of(player(true, OPERATOR), player(false, PLAYER));
+    TestServer.handle("getOnlinePlayers", args -> players);
+  }
+
+  @AfterAll
+  static void uninstallServer() {
+    TestServer.unhandle("getScheduler");
+    TestServer.unhandle("broadcast");
+    TestServer.unhandle("getOnlinePlayers");
+  }
+
+  @AfterEach
+  void reset() {
+    BroadcastDispatcher.stop();
+    for (Target target : Target.values()) {
+      BroadcastDispatcher.setRateLimit(target, BroadcastDispatcher.DEFAULT_RATE_LIMIT);
+    }
+    BroadcastDispatcher.setBacklogLimit(BroadcastDispatcher.DEFAULT_BACKLOG_LIMIT);
+    BROADCASTS.clear();
+    OPERATOR.clear();
+    PLAYER.clear();
+  }
+
+  @Test
+  void messagesAreSentAtOnceWhenNotStarted() {
+    BroadcastDispatcher.broadcast(text("a"));
+    BroadcastDispatcher.broadcast(text("a"));
+    assertEquals(List.of(text("a"), text("a")), BROADCASTS);
+  }
+
+  @Test
+  void sameMessagesOfATickAreMerged() {
+    start();
+    long merged = BroadcastDispatcher.getMergedCount();
+    BroadcastDispatcher.broadcast(text("a"));
+    BroadcastDispatcher.broadcast(text("a"));
+    BroadcastDispatcher.broadcast(text("b"));
+    BroadcastDispatcher.broadcast(text("a"));
+    assertEquals(List.of(), BROADCASTS);
+    assertEquals(merged + 2, BroadcastDispatcher.getMergedCount());
+    assertEquals(2, BroadcastDispatcher.getPending(Target.ALL));
+
+    tick.run();
+    assertEquals(List.of(text("a"), text("b")), BROADCASTS);
+    // Not merged with the message of the previous tick
+    BroadcastDispatcher.broadcast(text("a"));
+    tick.run();
+    assertEquals(List.of(text("a"), text("b"), text("a")), BROADCASTS);
+  }
+
+  @Test
+  void rateLimitSpreadsTheMessagesOverTheTicks() {
+    start();
+    BroadcastDispatcher.setRateLimit(Target.ALL, 2);
+    long delivered = BroadcastDispatcher.getDeliveredCount();
+    for (int i = 0; i < 5; i++) {
+      BroadcastDispatcher.broadcast(text("message " + i));
+    }
+    tick.run();
+    assertEquals(2, BROADCASTS.size());
+    assertEquals(3, BroadcastDispatcher.getPending(Target.ALL));
+    tick.run();
+    tick.run();
+    assertEquals(5, BROADCASTS.size());
+    assertEquals(0, BroadcastDispatcher.getPending(Target.ALL));
+    assertEquals(delivered + 5, BroadcastDispatcher.getDeliveredCount());
+    assertEquals(text("message 4"), BROADCASTS.get(4));
+  }
+
+  @Test
+  void messagesOverTheBacklogAreDropped() {
+    start();
+    BroadcastDispatcher.setBacklogLimit(2);
+    long dropped = BroadcastDispatcher.getDroppedCount();
+    for (int i = 0; i < 3; i++) {
+      BroadcastDispatcher.broadcast(text("message " + i));
+    }
+    assertEquals(2, BroadcastDispatcher.getPending(Target.ALL));
+    assertEquals(dropped + 1, BroadcastDispatcher.getDroppedCount());
+    tick.run();
+    assertEquals(List.of(text("message 0"), text("message 1")), BROADCASTS);
+  }
+
+  @Test
+  void importantMessagesAreSentToTheOperators() {
+    start();
+    BroadcastDispatcher.important(text("op"));
+    assertEquals(1, BroadcastDispatcher.getPending(Target.OPERATORS));
+    tick.run();
+    assertEquals(List.of(text("op")), OPERATOR);
+    assertEquals(List.of(), PLAYER);
+    assertEquals(List.of(), BROADCASTS);
+  }
+
+  @Test
+  void stopSendsThePendingMessages() {
+    start();
+    BroadcastDispatcher.setRateLimit(Target.ALL, 1);
+    for (int i = 0; i < 3; i++) {
+      BroadcastDispatcher.broadcast(text("message " + i));
+    }
+    BroadcastDispatcher.important(text("op"));
+    BroadcastDispatcher.stop();
+    assertTrue(CANCELLED.get());
+    assertEquals(3, BROADCASTS.size());
+    assertEquals(List.of(text("op")), OPERATOR);
+
+    BroadcastDispatcher.broadcast(text("after"));
+    assertEquals(text("after"), BROADCASTS.get(3));
+  }
+
+  @Test
+  void messagesSubmittedDuringStopAreSent() throws InterruptedException {
+    BroadcastDispatcher.setBacklogLimit(Integer.MAX_VALUE);
+    for (int round = 0; round < 20; round++) {
+      BROADCASTS.clear();
+      start();
+      CountDownLatch sending = new CountDownLatch(1);
+      Thread sender = new Thread(() -> {
+        for (int i = 0; i < 1000; i++) {
+          BroadcastDispatcher.broadcast(text("message " + i));
+          if (i == 100) {
+            sending.countDown();
+          }
+        }
+      });
+      sender.start();
+      assertTrue(sending.await(5, TimeUnit.SECONDS));
+      BroadcastDispatcher.stop();
+      sender.join();
+      assertEquals(1000, BROADCASTS.size());
+    }
+  }
+
+  private static void start() {
+    BroadcastDispatcher.start(TestPlugin.create(null));
+  }
+
+  private static Component text(String text) {
+    return Component.text(text);
+  }
+
+  private static Player player(boolean op, List<Component> received) {
+    UUID uuid = UUID.randomUUID();
+    return proxy(Player.class, (method, args) -> {
+      switch (method) {
+        case "isOp":
+          return op;
+        case "getUniqueId":
+          return uuid;
+        case "sendMessage":
+          if (args.length == 1 && args[0] instanceof Component) {
+            received.add((Component) args[0]);
+            return null;
+          }
+          throw new UnsupportedOperationException(method);
+        default:
+          throw new UnsupportedOperationException(method);
+      }
+    });
+  }
+
+  private static <T> T proxy(Class<T> type, Handler handler) {
+    return type.cast(Proxy.newProxyInstance(BroadcastDispatcherTest.class.getClassLoader(),
+        new Class<?>[]{type}, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            case "toString":
+              return type.getSimpleName();
+            default:
+              return handler.handle(method.getName(), args == null ? new Object[0] : args);
+          }
+        }));
+  }
+
+  @FunctionalInterface
+  private interface Handler {
+
+    Object handle(String method, Object[] args);
+  }
+}
@@ -0,0 +1,59 @@
+package github.rainbowmori.rainbowapi.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import org.junit.jupiter.api.Test;
+
+class FormatTemplateTest {
+
+  @Test
+  void compileReturnsTheCachedTemplate() {
+    assertSame(FormatTemplate.compile("cached {a}"), FormatTemplate.compile("cached {a}"));
+  }
+
+  @Test
+  void keysAreReplacedByTheirValues() {
+    FormatTemplate template = FormatTemplate.compile("{name} has {amount} coins{end}");
+    assertEquals(List.of("name", "amount", "end"), template.getKeys());
+    assertEquals("Steve has 10 coins!",
+        template.format(Map.of("name", "Steve", "amount", 10, "end", "!")));
+  }
+
+  @Test
+  void missingKeysAreRemovedFromMapsAndKeptFromProperties() {
+    FormatTemplate template = FormatTemplate.compile("a{x}b{y}c");
+    assertEquals("a1bc", template.format(Map.of("x", 1)));
+
+    Properties props = new Properties();
+    props.setProperty("x", "1");
+    assertEquals("a1b{y}c", template.format(props));
+  }
+
+  @Test
+  void valuesAreNotInterpreted() {
+    FormatTemplate template = FormatTemplate.compile("cost: {price}");
+    assertEquals("cost: $1 \\ $2", template.format(Map.of("price", "$1 \\ $2")));
+    assertEquals("cost: {other}", template.format(Map.of("price", "{other}", "other", "x")));
+  }
+
+  @Test
+  void onlyWordKeysAreHoles() {
+    FormatTemplate template = FormatTemplate.compile("{{name}} {bad-key} {} {name");
+    assertEquals(List.of("name"), template.getKeys());
+    assertEquals("{x} {bad-key} {} {name", template.format(Map.of("name", "x")));
+    assertEquals("trailing {", FormatTemplate.compile("trailing {").format(Map.of()));
+  }
+
+  @Test
+  void formatToAppendsToTheBuilder() {
+    FormatTemplate template = FormatTemplate.compile("<{v}>");
+    StringBuilder sb = new StringBuilder("start");
+    assertSame(sb, template.formatTo(sb, key -> key.toUpperCase(), false));
+    template.formatTo(sb, key -> null, true);
+    assertEquals("start<V><{v}>", sb.toString());
+  }
+}
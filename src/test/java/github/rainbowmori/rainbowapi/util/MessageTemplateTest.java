@@ -0,0 +1,111 @@
+package github.rainbowmori.rainbowapi.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.List;
+import java.util.Map;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.event.HoverEvent;
+import net.kyori.adventure.text.format.NamedTextColor;
+import net.kyori.adventure.text.format.TextColor;
+import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
+import org.junit.jupiter.api.Test;
+
+class MessageTemplateTest {
+
+  @Test
+  void compileReturnsTheCachedTemplate() {
+    assertSame(MessageTemplate.compile("<red>{a}"), MessageTemplate.compile("<red>{a}"));
+  }
+
+  @Test
+  void valuesFillTheHoles() {
+    MessageTemplate template = MessageTemplate.compile("<gray>Balance: <gold>{amount}");
+    assertEquals(List.of("amount"), template.getKeys());
+    Component rendered = template.render(Map.of("amount", 100));
+    assertEquals("Balance: 100", plain(rendered));
+    assertEquals(NamedTextColor.GRAY, color(rendered, "Balance: ", null));
+    assertEquals(NamedTextColor.GOLD, color(rendered, "100", null));
+  }
+
+  @Test
+  void stringValuesAreNotParsed() {
+    MessageTemplate template = MessageTemplate.compile("<gray>Hello {name}!");
+    assertEquals("Hello <red>x!", plain(template.render(Map.of("name", "<red>x"))));
+  }
+
+  @Test
+  void componentValuesAreInserted() {
+    MessageTemplate template = MessageTemplate.compile("<gray>Hello {name}!");
+    Component name = Component.text("Steve", NamedTextColor.AQUA);
+    Component rendered = template.render(Map.of("name", name));
+    assertEquals("Hello Steve!", plain(rendered));
+    assertEquals(NamedTextColor.GRAY, color(rendered, "Hello ", null));
+    assertEquals(NamedTextColor.AQUA, color(rendered, "Steve", null));
+  }
+
+  @Test
+  void missingValuesAreRemoved() {
+    MessageTemplate template = MessageTemplate.compile("<gray>[{a}] [{b}]");
+    assertEquals("[1] []", plain(template.render(Map.of("a", 1))));
+  }
+
+  @Test
+  void holesInsideTagsAreFormattedBeforeParsing() {
+    MessageTemplate template = MessageTemplate.compile(
+        "<click:run_command:/pay {player}>pay</click>");
+    assertEquals(Util.mm("<click:run_command:/pay Steve>pay</click>", false),
+        template.render(Map.of("player", "Steve")));
+  }
+
+  @Test
+  void valuesInsideTagsAreNotParsed() {
+    MessageTemplate template = MessageTemplate.compile(
+        "<hover:show_text:'{name}'>{name}</hover>");
+    String name = "<click:run_command:/op Steve>Steve";
+    Component rendered = template.render(Map.of("name", name));
+    assertEquals(name, plain(rendered));
+    assertFalse(hasClick(rendered));
+  }
+
+  private static String plain(Component component) {
+    return PlainTextComponentSerializer.plainText().serialize(component);
+  }
+
+  // Whether a click event is set on the component, its children or their hover texts
+  private static boolean hasClick(Component component) {
+    if (component.clickEvent() != null) {
+      return true;
+    }
+    HoverEvent<?> hover = component.hoverEvent();
+    if (hover != null && hover.value() instanceof Component
+        && hasClick((Component) hover.value())) {
+      return true;
+    }
+    for (Component child : component.children()) {
+      if (hasClick(child)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Color of the first text containing text, inherited from the parents like the client does
+  private static TextColor color(Component component, String text, TextColor parent) {
+    TextColor color = component.color() != null ? component.color() : parent;
+    if (component instanceof TextComponent
+        && ((TextComponent) component).content().contains(text)) {
+      return color;
+    }
+    for (Component child : component.children()) {
+      TextColor found = color(child, text, color);
+      if (found != null) {
+        return found;
+      }
+    }
+    return null;
+  }
+}
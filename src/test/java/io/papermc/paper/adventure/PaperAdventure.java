@@ -0,0 +1,16 @@
+package io.papermc.paper.adventure;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+import net.minecraft.network.chat.IChatBaseComponent;
+
+// Fake server class used by the FastBoard tests
+public final class PaperAdventure {
+
+  private PaperAdventure() {
+  }
+
+  public static IChatBaseComponent asVanilla(Component component) {
+    return new IChatBaseComponent(LegacyComponentSerializer.legacySection().serialize(component));
+  }
+}
@@ -0,0 +1,6 @@
+package net.minecraft;
+
+// Fake server class used by the FastBoard tests
+public enum EnumChatFormat {
+  RESET
+}
@@ -0,0 +1,15 @@
+package net.minecraft.network.chat;
+
+// Fake server class used by the FastBoard tests
+public class IChatBaseComponent {
+
+  private final String text;
+
+  public IChatBaseComponent(String text) {
+    this.text = text;
+  }
+
+  public String getText() {
+    return this.text;
+  }
+}
@@ -0,0 +1,7 @@
+package net.minecraft.network.chat.numbers;
+
+// Fake server class used by the FastBoard tests
+public class BlankFormat implements NumberFormat {
+
+  public static final BlankFormat INSTANCE = new BlankFormat();
+}
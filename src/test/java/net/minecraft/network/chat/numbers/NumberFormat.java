@@ -0,0 +1,5 @@
+package net.minecraft.network.chat.numbers;
+
+// Fake server class used by the FastBoard tests
+public interface NumberFormat {
+}
@@ -0,0 +1,5 @@
+package net.minecraft.network.protocol;
+
+// Fake server class used by the FastBoard tests
+public interface Packet {
+}
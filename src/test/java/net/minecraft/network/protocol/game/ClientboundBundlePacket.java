@@ -0,0 +1,19 @@
+package net.minecraft.network.protocol.game;
+
+import java.util.ArrayList;
+import java.util.List;
+import net.minecraft.network.protocol.Packet;
+
+// Fake server class used by the FastBoard tests
+public class ClientboundBundlePacket implements Packet {
+
+  private final List<Packet> packets = new ArrayList<>();
+
+  public ClientboundBundlePacket(Iterable<Packet> packets) {
+    packets.forEach(this.packets::add);
+  }
+
+  public List<Packet> getPackets() {
+    return this.packets;
+  }
+}
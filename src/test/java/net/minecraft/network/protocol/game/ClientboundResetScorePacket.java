@@ -0,0 +1,15 @@
+package net.minecraft.network.protocol.game;
+
+import net.minecraft.network.protocol.Packet;
+
+// Fake server class used by the FastBoard tests
+public class ClientboundResetScorePacket implements Packet {
+
+  public final String owner;
+  public final String objectiveName;
+
+  public ClientboundResetScorePacket(String owner, String objectiveName) {
+    this.owner = owner;
+    this.objectiveName = objectiveName;
+  }
+}
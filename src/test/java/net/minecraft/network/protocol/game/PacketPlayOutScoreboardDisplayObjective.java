@@ -0,0 +1,11 @@
+package net.minecraft.network.protocol.game;
+
+import net.minecraft.network.protocol.Packet;
+import net.minecraft.world.scores.DisplaySlot;
+
+// Fake server class used by the FastBoard tests
+public class PacketPlayOutScoreboardDisplayObjective implements Packet {
+
+  public DisplaySlot slot;
+  public String objectiveName;
+}
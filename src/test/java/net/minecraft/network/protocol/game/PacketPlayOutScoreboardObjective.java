@@ -0,0 +1,14 @@
+package net.minecraft.network.protocol.game;
+
+import net.minecraft.network.chat.IChatBaseComponent;
+import net.minecraft.network.protocol.Packet;
+import net.minecraft.world.scores.criteria.IScoreboardCriteria;
+
+// Fake server class used by the FastBoard tests
+public class PacketPlayOutScoreboardObjective implements Packet {
+
+  public String objectiveName;
+  public IChatBaseComponent displayName;
+  public IScoreboardCriteria.EnumScoreboardHealthDisplay renderType;
+  public int method;
+}
@@ -0,0 +1,20 @@
+package net.minecraft.network.protocol.game;
+
+import net.minecraft.network.chat.IChatBaseComponent;
+import net.minecraft.network.chat.numbers.NumberFormat;
+import net.minecraft.network.protocol.Packet;
+
+// Fake server class used by the FastBoard tests
+public class PacketPlayOutScoreboardScore implements Packet {
+
+  public final String owner;
+  public final String objectiveName;
+  public final int score;
+
+  public PacketPlayOutScoreboardScore(String owner, String objectiveName, int score,
+      IChatBaseComponent display, NumberFormat numberFormat) {
+    this.owner = owner;
+    this.objectiveName = objectiveName;
+    this.score = score;
+  }
+}
@@ -0,0 +1,26 @@
+package net.minecraft.network.protocol.game;
+
+import java.util.Collection;
+import java.util.Optional;
+import net.minecraft.EnumChatFormat;
+import net.minecraft.network.chat.IChatBaseComponent;
+import net.minecraft.network.protocol.Packet;
+
+// Fake server class used by the FastBoard tests
+public class PacketPlayOutScoreboardTeam implements Packet {
+
+  public int method;
+  public String name;
+  public Collection<String> players;
+  public Optional<b> parameters;
+
+  public static class b {
+
+    public IChatBaseComponent displayName;
+    public IChatBaseComponent playerPrefix;
+    public IChatBaseComponent playerSuffix;
+    public String nametagVisibility;
+    public String collisionRule;
+    public EnumChatFormat color;
+  }
+}
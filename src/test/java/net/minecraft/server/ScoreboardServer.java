@@ -0,0 +1,9 @@
+package net.minecraft.server;
+
+// Fake server class used by the FastBoard tests
+public class ScoreboardServer {
+
+  public enum Action {
+    CHANGE, REMOVE
+  }
+}
@@ -0,0 +1,9 @@
+package net.minecraft.server.level;
+
+import net.minecraft.server.network.PlayerConnection;
+
+// Fake server class used by the FastBoard tests
+public class EntityPlayer {
+
+  public final PlayerConnection connection = new PlayerConnection();
+}
@@ -0,0 +1,36 @@
+package net.minecraft.server.network;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import net.minecraft.network.protocol.Packet;
+import net.minecraft.network.protocol.game.ClientboundBundlePacket;
+
+// Fake server class used by the FastBoard tests
+public class PlayerConnection {
+
+  private final List<Packet> packets = Collections.synchronizedList(new ArrayList<>());
+  private int bundles;
+
+  public void send(Packet packet) {
+    if (packet instanceof ClientboundBundlePacket) {
+      this.bundles++;
+      this.packets.addAll(((ClientboundBundlePacket) packet).getPackets());
+    } else {
+      this.packets.add(packet);
+    }
+  }
+
+  /**
+   * @return the packets received, with the bundles unpacked
+   */
+  public List<Packet> getPackets() {
+    synchronized (this.packets) {
+      return new ArrayList<>(this.packets);
+    }
+  }
+
+  public int getBundles() {
+    return this.bundles;
+  }
+}
@@ -0,0 +1,6 @@
+package net.minecraft.world.scores;
+
+// Fake server class used by the FastBoard tests
+public enum DisplaySlot {
+  LIST, SIDEBAR
+}
@@ -0,0 +1,9 @@
+package net.minecraft.world.scores.criteria;
+
+// Fake server class used by the FastBoard tests
+public class IScoreboardCriteria {
+
+  public enum EnumScoreboardHealthDisplay {
+    INTEGER, HEARTS
+  }
+}
@@ -0,0 +1,7 @@
+package org.bukkit.craftbukkit.v1_20_R3;
+
+import org.bukkit.Server;
+
+// Fake server class used by the tests (not public, so its proxy is in this package)
+interface CraftServer extends Server {
+}
@@ -0,0 +1,118 @@
+package org.bukkit.craftbukkit.v1_20_R3;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import org.bukkit.Bukkit;
+
+/**
+ * Install a fake {@link org.bukkit.Server} in {@link Bukkit}, whose class is in the
+ * CraftBukkit package of 1.20.4, for the tests using NMS reflection.
+ * <p>
+ * The methods returning an interface (console sender, scheduler, ...) return a proxy doing
+ * nothing, unless a test answers them with {@link #handle(String, Function)}.
+ */
+public final class TestServer {
+
+  private static final Logger LOGGER = Logger.getLogger("TestServer");
+  private static final Map<String, Function<Object[], Object>> HANDLERS = new ConcurrentHashMap<>();
+  // The proxies unbox the returned value into the primitive return type
+  private static final Map<Class<?>, Object> PRIMITIVES = Map.of(boolean.class, false,
+      char.class, '\0', byte.class, (byte) 0, short.class, (short) 0, int.class, 0,
+      long.class, 0L, float.class, 0F, double.class, 0D);
+
+  private TestServer() {
+  }
+
+  public static synchronized void install() {
+    if (Bukkit.getServer() != null) {
+      return;
+    }
+
+    // Bukkit.setServer would log the version of the server, read from its jar
+    Object server = Proxy.newProxyInstance(CraftServer.class.getClassLoader(),
+        new Class<?>[]{CraftServer.class}, (proxy, method, args) -> {
+          Function<Object[], Object> handler = HANDLERS.get(method.getName());
+          if (handler != null) {
+            return handler.apply(args);
+          }
+          switch (method.getName()) {
+            case "getLogger":
+              return LOGGER;
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            default:
+              return method.getReturnType() == String.class ? "test"
+                  : noop(method.getReturnType());
+          }
+        });
+    try {
+      Field field = Bukkit.class.getDeclaredField("server");
+      field.setAccessible(true);
+      field.set(null, server);
+    } catch (ReflectiveOperationException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Answer the calls of a server method (the last handler of the method wins).
+   *
+   * @param method  the name of the server method
+   * @param handler the answer from the arguments (null when there are none)
+   */
+  public static void handle(String method, Function<Object[], Object> handler) {
+    HANDLERS.put(method, handler);
+  }
+
+  /**
+   * Stop answering the calls of a server method.
+   *
+   * @param method the name of the server method
+   */
+  public static void unhandle(String method) {
+    HANDLERS.remove(method);
+  }
+
+  /**
+   * Get the value returned by a method doing nothing.
+   *
+   * @param type the return type
+   * @return an empty collection, a proxy doing nothing for the interfaces, zero or null
+   */
+  public static Object noop(Class<?> type) {
+    if (type.isPrimitive()) {
+      return type == void.class ? null : PRIMITIVES.get(type);
+    }
+    if (type == Object.class || !type.isInterface()) {
+      return null;
+    }
+    if (type.isAssignableFrom(List.class)) {
+      return List.of();
+    }
+    if (type.isAssignableFrom(Set.class)) {
+      return Set.of();
+    }
+    return Proxy.newProxyInstance(TestServer.class.getClassLoader(), new Class<?>[]{type},
+        (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            case "toString":
+              return "Noop(" + type.getSimpleName() + ")";
+            default:
+              return method.getReturnType() == String.class ? "test"
+                  : noop(method.getReturnType());
+          }
+        });
+  }
+}
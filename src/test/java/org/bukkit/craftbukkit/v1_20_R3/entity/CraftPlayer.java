@@ -0,0 +1,10 @@
+package org.bukkit.craftbukkit.v1_20_R3.entity;
+
+import net.minecraft.server.level.EntityPlayer;
+import org.bukkit.entity.Player;
+
+// Fake server class used by the FastBoard tests
+public interface CraftPlayer extends Player {
+
+  EntityPlayer getHandle();
+}